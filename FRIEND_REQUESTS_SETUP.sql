@@ -19,6 +19,9 @@ CREATE TABLE requests (
 CREATE INDEX idx_requests_receiver ON requests(receiver_id, is_approved);
 CREATE INDEX idx_requests_sender ON requests(sender_id);
 CREATE INDEX idx_requests_status ON requests(is_approved);
+-- Pending inbox, newest first (keyset pagination on created_at, request_id)
+CREATE INDEX idx_requests_receiver_pending ON requests(receiver_id, created_at DESC, request_id DESC)
+    WHERE is_approved IS NULL;
 
 -- Enable Row Level Security (RLS) - Optional but recommended
 ALTER TABLE requests ENABLE ROW LEVEL SECURITY;
@@ -71,6 +74,50 @@ BEGIN
 END;
 $$ LANGUAGE plpgsql;
 
+-- Keep the API servers' caches in sync with direct writes.
+-- Each backend node caches the friend graph in memory and hears about changes made
+-- elsewhere through LISTEN cache_invalidation. The app writes this table directly
+-- (supabase.js), so the database announces every change itself: a sender line
+-- ('db', never a node id) followed by one FRIENDSHIP=<sender>:<receiver> event.
+-- The channel must match cache.invalidation.channel in application.properties.
+CREATE OR REPLACE FUNCTION notify_request_change()
+RETURNS TRIGGER AS $$
+BEGIN
+  -- Only the two users and the approval state matter to the cache
+  IF TG_OP = 'UPDATE'
+     AND NEW.sender_id = OLD.sender_id AND NEW.receiver_id = OLD.receiver_id
+     AND NEW.is_approved IS NOT DISTINCT FROM OLD.is_approved THEN
+    RETURN NULL;
+  END IF;
+  IF TG_OP <> 'DELETE' THEN
+    PERFORM pg_notify('cache_invalidation',
+      'db' || E'\n' || 'FRIENDSHIP=' || NEW.sender_id || ':' || NEW.receiver_id);
+  END IF;
+  IF TG_OP <> 'INSERT' THEN
+    PERFORM pg_notify('cache_invalidation',
+      'db' || E'\n' || 'FRIENDSHIP=' || OLD.sender_id || ':' || OLD.receiver_id);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER requests_cache_invalidation
+AFTER INSERT OR UPDATE OR DELETE ON requests
+FOR EACH ROW EXECUTE FUNCTION notify_request_change();
+
+-- TRUNCATE skips row triggers; ALL makes every node drop its cached state
+CREATE OR REPLACE FUNCTION notify_requests_truncated()
+RETURNS TRIGGER AS $$
+BEGIN
+  PERFORM pg_notify('cache_invalidation', 'db' || E'\n' || 'ALL=');
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER requests_cache_invalidation_truncate
+AFTER TRUNCATE ON requests
+FOR EACH STATEMENT EXECUTE FUNCTION notify_requests_truncated();
+
 -- Sample queries to test:
 
 -- Get all friends of a user
@@ -0,0 +1,209 @@
+package com.myapp.loadtest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+
+// ==================== DATA SEEDER ====================
+// Streams synthetic rows into users and sessions with COPY, which is an order
+// of magnitude faster than batched INSERTs at millions of rows. Output is a
+// pure function of --seed, so two runs produce identical data.
+class DataSeeder {
+
+    private static final String IMAGE_PREFIX = "data:image/jpeg;base64,";
+    private static final int MIN_IMAGE_BYTES = 2 * 1024;
+    private static final int MAX_IMAGE_BYTES = 2 * 1024 * 1024;
+    private static final int COPY_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private final String jdbcUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final long users;
+    private final int sessionsPerUser;
+    private final long seed;
+    private final double imageNullRatio;
+    private final int imageMedianBytes;
+    private final boolean reset;
+    private final boolean allowRemote;
+
+    // One random base64 blob; each image is a prefix of it (cheap, still incompressible)
+    private final String imagePool;
+
+    DataSeeder(Map<String, String> options) {
+        this.jdbcUrl = options.getOrDefault("jdbc-url", "jdbc:postgresql://localhost:5432/postgres");
+        this.dbUser = options.getOrDefault("db-user", "postgres");
+        this.dbPassword = options.getOrDefault("db-password", "postgres");
+        this.users = Long.parseLong(options.getOrDefault("users", "1000000"));
+        this.sessionsPerUser = Integer.parseInt(options.getOrDefault("sessions-per-user", "3"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.imageNullRatio = Double.parseDouble(options.getOrDefault("image-null-ratio", "0.4"));
+        this.imageMedianBytes = Integer.parseInt(options.getOrDefault("image-median-kb", "24")) * 1024;
+        this.reset = Boolean.parseBoolean(options.getOrDefault("reset", "false"));
+        this.allowRemote = Boolean.parseBoolean(options.getOrDefault("allow-remote", "false"));
+
+        byte[] raw = new byte[MAX_IMAGE_BYTES];
+        new Random(seed).nextBytes(raw);
+        this.imagePool = Base64.getEncoder().encodeToString(raw);
+    }
+
+    void seed() throws SQLException {
+        checkLocal();
+        long started = System.nanoTime();
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, dbUser, dbPassword)) {
+            createSchema(connection);
+            if (reset) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("TRUNCATE users CASCADE");
+                }
+            }
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            long imageBytes = copyUsers(copyManager);
+            copySessions(copyManager);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE users");
+                statement.execute("ANALYZE sessions");
+            }
+
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("{\"users\":%d,\"sessions\":%d,\"imageBytes\":%d,\"seconds\":%.1f}%n",
+                    users, users * sessionsPerUser, imageBytes, seconds);
+        }
+    }
+
+    // Millions of rows into a shared database by accident would be bad
+    private void checkLocal() {
+        String host = URI.create(jdbcUrl.substring("jdbc:".length())).getHost();
+        boolean local = "localhost".equals(host) || "127.0.0.1".equals(host) || "::1".equals(host);
+        if (!local && !allowRemote) {
+            throw new IllegalArgumentException("Refusing to seed non-local database " + host
+                    + " (pass --allow-remote to override)");
+        }
+    }
+
+    // Same shape as SUPABASE_SETUP.sql, for an empty local database
+    private void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS users ("
+                    + "user_id UUID PRIMARY KEY DEFAULT gen_random_uuid(), "
+                    + "username VARCHAR(50) UNIQUE NOT NULL, "
+                    + "password VARCHAR(255) NOT NULL, "
+                    + "full_name VARCHAR(100) NOT NULL, "
+                    + "user_image TEXT, "
+                    + "created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(), "
+                    + "row_version BIGINT NOT NULL DEFAULT 0)");
+            statement.execute("CREATE TABLE IF NOT EXISTS sessions ("
+                    + "session_id UUID PRIMARY KEY DEFAULT gen_random_uuid(), "
+                    + "user_id UUID NOT NULL REFERENCES users(user_id) ON DELETE CASCADE, "
+                    + "token VARCHAR(255) UNIQUE NOT NULL, "
+                    + "login_time TIMESTAMP WITH TIME ZONE DEFAULT NOW(), "
+                    + "logout_time TIMESTAMP WITH TIME ZONE, "
+                    + "device_info TEXT, "
+                    + "is_active BOOLEAN DEFAULT TRUE)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_sessions_user_id ON sessions(user_id)");
+        }
+    }
+
+    private long copyUsers(CopyManager copyManager) throws SQLException {
+        Random random = new Random(seed);
+        ZonedDateTime epoch = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        long imageBytes = 0;
+
+        CopyIn copy = copyManager.copyIn("COPY users (user_id, username, password, full_name, user_image, created_at) "
+                + "FROM STDIN (FORMAT csv)");
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_BYTES + MAX_IMAGE_BYTES * 2);
+        try {
+            for (long i = 0; i < users; i++) {
+                buffer.append(SyntheticData.userId(i)).append(',')
+                        .append(SyntheticData.username(i)).append(',')
+                        .append(SyntheticData.PASSWORD).append(',')
+                        .append(SyntheticData.fullName(i)).append(',');
+                // Empty unquoted field = NULL in CSV COPY. Images are quoted because the
+                // data URL contains a comma (base64 itself has no quotes to escape).
+                if (random.nextDouble() >= imageNullRatio) {
+                    String image = image(random);
+                    imageBytes += image.length();
+                    buffer.append('"').append(image).append('"');
+                }
+                buffer.append(',').append(epoch.plusSeconds(i * 7)).append('\n');
+
+                if (buffer.length() >= COPY_BUFFER_BYTES) {
+                    write(copy, buffer);
+                    progress("users", i + 1, users);
+                }
+            }
+            write(copy, buffer);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+        return imageBytes;
+    }
+
+    private void copySessions(CopyManager copyManager) throws SQLException {
+        Random random = new Random(seed + 1);
+        ZonedDateTime epoch = ZonedDateTime.of(2024, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+        CopyIn copy = copyManager.copyIn("COPY sessions (session_id, user_id, token, login_time, logout_time, "
+                + "device_info, is_active) FROM STDIN (FORMAT csv)");
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_BYTES + 4096);
+        try {
+            for (long i = 0; i < users; i++) {
+                for (int s = 0; s < sessionsPerUser; s++) {
+                    ZonedDateTime login = epoch.plusSeconds(random.nextInt(180 * 24 * 3600));
+                    boolean active = SyntheticData.isActiveSession(s);
+                    buffer.append(SyntheticData.sessionId(i, s)).append(',')
+                            .append(SyntheticData.userId(i)).append(',')
+                            .append(SyntheticData.token(i, s)).append(',')
+                            .append(login).append(',')
+                            .append(active ? "" : login.plusMinutes(5 + random.nextInt(600)).toString()).append(',')
+                            .append("\"IP: 10.0.").append(random.nextInt(256)).append('.').append(random.nextInt(256))
+                            .append(" | User-Agent: Mozilla/5.0 (load-test)\"").append(',')
+                            .append(active).append('\n');
+                }
+                if (buffer.length() >= COPY_BUFFER_BYTES) {
+                    write(copy, buffer);
+                    progress("sessions", i + 1, users);
+                }
+            }
+            write(copy, buffer);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    // Log-normal around the median, like real avatar uploads (many small, a long tail)
+    private String image(Random random) {
+        double bytes = imageMedianBytes * Math.exp(0.8 * random.nextGaussian());
+        int rawBytes = (int) Math.max(MIN_IMAGE_BYTES, Math.min(MAX_IMAGE_BYTES, bytes));
+        int base64Chars = (rawBytes + 2) / 3 * 4;
+        return IMAGE_PREFIX + imagePool.substring(0, base64Chars);
+    }
+
+    private static void write(CopyIn copy, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void progress(String table, long done, long total) {
+        if (done % 50000 < 500 || done == total) {
+            System.err.printf("%s: %d / %d%n", table, done, total);
+        }
+    }
+}
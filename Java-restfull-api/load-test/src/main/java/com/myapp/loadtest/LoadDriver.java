@@ -0,0 +1,316 @@
+package com.myapp.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// ==================== OPERATIONS ====================
+enum Operation {
+    SIGNUP, LOGIN, VALIDATE, LOGOUT, PROFILE;
+
+    String label() {
+        return name().toLowerCase();
+    }
+}
+
+// ==================== LATENCY RECORDER ====================
+// Raw samples per operation; a run is at most a few million requests, so
+// keeping every sample and sorting at the end is simpler than a histogram.
+class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+    private final Map<String, Long> errorsByCause = new LinkedHashMap<>();
+
+    synchronized void success(long latencyNanos) {
+        add(latencyNanos);
+    }
+
+    // Failed requests still count towards latency: a fast 500 is not a free pass
+    synchronized void error(long latencyNanos, String cause) {
+        add(latencyNanos);
+        errors++;
+        errorsByCause.merge(cause, 1L, Long::sum);
+    }
+
+    private void add(long latencyNanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = latencyNanos;
+    }
+
+    synchronized void mergeInto(LatencyRecorder total) {
+        for (int i = 0; i < count; i++) {
+            total.add(samples[i]);
+        }
+        total.errors += errors;
+        errorsByCause.forEach((cause, n) -> total.errorsByCause.merge(cause, n, Long::sum));
+    }
+
+    synchronized String toJson(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"requests\":").append(count)
+                .append(",\"errors\":").append(errors)
+                .append(",\"errorRate\":").append(format(count == 0 ? 0 : (double) errors / count))
+                .append(",\"throughputRps\":").append(format(count / seconds))
+                .append(",\"p50Ms\":").append(percentileMs(sorted, 0.50))
+                .append(",\"p99Ms\":").append(percentileMs(sorted, 0.99))
+                .append(",\"p999Ms\":").append(percentileMs(sorted, 0.999))
+                .append(",\"maxMs\":").append(sorted.length == 0 ? "0" : format(sorted[sorted.length - 1] / 1e6))
+                .append(",\"errorsByCause\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> entry : errorsByCause.entrySet()) {
+            json.append(separator).append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    // Nearest-rank percentile
+    private static String percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return "0";
+        }
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return format(sorted[Math.max(0, rank)] / 1e6);
+    }
+
+    static String format(double value) {
+        return String.format(java.util.Locale.ROOT, "%.3f", value);
+    }
+}
+
+// ==================== LOAD DRIVER ====================
+// Open-loop driver: requests are started on a fixed schedule (--rate per
+// second) regardless of how fast the server answers, and each latency is
+// measured from the time the request was *scheduled*, not sent. When the
+// server stalls, the queued-up requests therefore show the stall instead of
+// silently lowering the offered load (coordinated omission).
+class LoadDriver {
+
+    private static final String DEFAULT_MIX = "signup:2,login:10,validate:50,logout:8,profile:30";
+
+    private final String baseUrl;
+    private final double rate;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final long users;
+    private final int sessionsPerUser;
+    private final long seed;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final String runId;
+    private final String mixSpec;
+    private final String out;
+
+    private final Operation[] mixOperations;
+    private final int[] mixCumulative;
+    private final int mixTotal;
+
+    private final HttpClient client;
+    private final Map<Operation, LatencyRecorder> recorders = new LinkedHashMap<>();
+
+    private final AtomicLong signups = new AtomicLong();
+
+    LoadDriver(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        this.rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        this.durationSeconds = Long.parseLong(options.getOrDefault("duration", "60"));
+        this.warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+        this.users = Long.parseLong(options.getOrDefault("users", "1000000"));
+        this.sessionsPerUser = Integer.parseInt(options.getOrDefault("sessions-per-user", "3"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "512"));
+        this.timeoutMillis = Long.parseLong(options.getOrDefault("timeout-ms", "10000"));
+        // Signup usernames must not collide with earlier runs against the same database
+        this.runId = options.getOrDefault("run-id", Long.toString(System.currentTimeMillis(), 36));
+        this.mixSpec = options.getOrDefault("mix", DEFAULT_MIX);
+        this.out = options.get("out");
+
+        String[] parts = mixSpec.split(",");
+        mixOperations = new Operation[parts.length];
+        mixCumulative = new int[parts.length];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split(":");
+            mixOperations[i] = Operation.valueOf(pair[0].trim().toUpperCase());
+            total += Integer.parseInt(pair[1].trim());
+            mixCumulative[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Empty request mix: " + mixSpec);
+        }
+        mixTotal = total;
+        if (sessionsPerUser < 2 && mixSpec.toUpperCase().contains("LOGOUT")) {
+            throw new IllegalArgumentException(
+                    "logout needs --sessions-per-user >= 2 (session 0 is kept for validate)");
+        }
+
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+    }
+
+    void run() throws Exception {
+        Random random = new Random(seed);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long intervalNanos = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        System.err.printf("Driving %s at %.0f req/s for %ds (+%ds warmup), mix %s%n",
+                baseUrl, rate, durationSeconds, warmupSeconds, mixSpec);
+
+        for (long k = 0;; k++) {
+            long intended = start + k * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // If the cap is hit the schedule falls behind, and the catch-up
+            // requests carry that delay in their latency
+            inFlight.acquire();
+
+            Operation operation = pick(random);
+            long userIndex = Math.floorMod(random.nextLong(), users);
+            // Logouts use the seeded sessions other than 0, so the request sequence
+            // depends only on --seed (logging out an ended session costs the same)
+            int sessionIndex = operation == Operation.LOGOUT ? 1 + random.nextInt(sessionsPerUser - 1) : 0;
+            boolean measured = intended >= measureFrom;
+            send(operation, userIndex, sessionIndex, intended, measured, inFlight);
+        }
+
+        if (!inFlight.tryAcquire(maxInFlight, timeoutMillis * 2, TimeUnit.MILLISECONDS)) {
+            System.err.println("Some requests were still in flight at shutdown");
+        }
+        report();
+    }
+
+    private Operation pick(Random random) {
+        int roll = random.nextInt(mixTotal);
+        for (int i = 0; i < mixCumulative.length; i++) {
+            if (roll < mixCumulative[i]) {
+                return mixOperations[i];
+            }
+        }
+        return mixOperations[mixOperations.length - 1];
+    }
+
+    private void send(Operation operation, long userIndex, int sessionIndex, long intended, boolean measured,
+            Semaphore inFlight) {
+        HttpRequest request = buildRequest(operation, userIndex, sessionIndex);
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    try {
+                        long latency = System.nanoTime() - intended;
+                        if (failure != null) {
+                            Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                            record(operation, measured, latency, cause.getClass().getSimpleName());
+                        } else if (response.statusCode() / 100 != 2) {
+                            record(operation, measured, latency, "http_" + response.statusCode());
+                        } else if (measured) {
+                            recorders.get(operation).success(latency);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+    }
+
+    private void record(Operation operation, boolean measured, long latency, String cause) {
+        if (measured) {
+            recorders.get(operation).error(latency, cause);
+        }
+    }
+
+    private HttpRequest buildRequest(Operation operation, long userIndex, int sessionIndex) {
+        switch (operation) {
+            case SIGNUP:
+                long n = signups.incrementAndGet();
+                return post("/api/users/signup", "{\"username\":\"lt_" + runId + "_" + n + "\","
+                        + "\"password\":\"" + SyntheticData.PASSWORD + "\","
+                        + "\"fullName\":\"Load Test Signup " + n + "\"}");
+            case LOGIN:
+                return post("/api/users/login", "{\"username\":\"" + SyntheticData.username(userIndex) + "\","
+                        + "\"password\":\"" + SyntheticData.PASSWORD + "\"}");
+            case VALIDATE:
+                return post("/api/users/validate-token",
+                        "{\"token\":\"" + SyntheticData.token(userIndex, 0) + "\"}");
+            case LOGOUT:
+                return post("/api/users/logout",
+                        "{\"token\":\"" + SyntheticData.token(userIndex, sessionIndex) + "\"}");
+            case PROFILE:
+            default:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/users/" + SyntheticData.userId(userIndex)))
+                        .timeout(Duration.ofMillis(timeoutMillis))
+                        .GET()
+                        .build();
+        }
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Content-Type", "application/json")
+                .header("User-Agent", "load-test")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private void report() throws IOException {
+        LatencyRecorder overall = new LatencyRecorder();
+        StringBuilder perOperation = new StringBuilder();
+        String separator = "";
+        for (Map.Entry<Operation, LatencyRecorder> entry : recorders.entrySet()) {
+            entry.getValue().mergeInto(overall);
+            perOperation.append(separator).append('"').append(entry.getKey().label()).append("\":")
+                    .append(entry.getValue().toJson(durationSeconds));
+            separator = ",";
+        }
+
+        String json = "{\"config\":{"
+                + "\"baseUrl\":\"" + baseUrl + "\""
+                + ",\"targetRps\":" + LatencyRecorder.format(rate)
+                + ",\"durationSeconds\":" + durationSeconds
+                + ",\"warmupSeconds\":" + warmupSeconds
+                + ",\"users\":" + users
+                + ",\"sessionsPerUser\":" + sessionsPerUser
+                + ",\"seed\":" + seed
+                + ",\"maxInFlight\":" + maxInFlight
+                + ",\"mix\":\"" + mixSpec + "\""
+                + ",\"runId\":\"" + runId + "\"}"
+                + ",\"overall\":" + overall.toJson(durationSeconds)
+                + ",\"operations\":{" + perOperation + "}}";
+
+        if (out == null) {
+            System.out.println(json);
+        } else {
+            Files.writeString(Path.of(out), json + System.lineSeparator());
+            System.err.println("Results written to " + out);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.myapp.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// ==================== LOAD TEST ENTRY POINT ====================
+// Two commands:
+//   seed  - bulk-load synthetic users/sessions into a local Postgres
+//   run   - replay a request mix against a running backend at a fixed rate
+// Options are --key=value; defaults are in the DataSeeder / LoadDriver constructors.
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || (!args[0].equals("seed") && !args[0].equals("run"))) {
+            System.err.println("Usage: LoadTest seed|run [--key=value ...]");
+            System.err.println("  seed --jdbc-url= --db-user= --db-password= --users= --sessions-per-user= --seed=");
+            System.err.println("       --image-null-ratio= --image-median-kb= [--reset] [--allow-remote]");
+            System.err.println("  run  --base-url= --rate= --duration= --warmup= --mix=signup:2,login:10,...");
+            System.err.println("       --users= --sessions-per-user= --seed= --max-in-flight= --timeout-ms=");
+            System.err.println("       --run-id= --out=");
+            System.exit(2);
+        }
+
+        Map<String, String> options = parseOptions(args);
+        if (args[0].equals("seed")) {
+            new DataSeeder(options).seed();
+        } else {
+            new LoadDriver(options).run();
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+}
+
+// ==================== SYNTHETIC DATA ====================
+// Naming rules shared by the seeder and the driver, so the driver can address
+// seeded rows (ids, usernames, tokens) without reading them back.
+class SyntheticData {
+    static final String PASSWORD = "loadtest";
+
+    static UUID userId(long index) {
+        return UUID.nameUUIDFromBytes(("loadtest-user-" + index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String username(long index) {
+        return "lt_user_" + index;
+    }
+
+    static String fullName(long index) {
+        return "Load Test User " + index;
+    }
+
+    static UUID sessionId(long userIndex, int sessionIndex) {
+        return UUID.nameUUIDFromBytes(("loadtest-session-" + userIndex + "-" + sessionIndex)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String token(long userIndex, int sessionIndex) {
+        return "lt-" + userIndex + "-" + sessionIndex;
+    }
+
+    // Session 0 of every user stays active; the driver validates those tokens and
+    // logs out the others
+    static boolean isActiveSession(int sessionIndex) {
+        return sessionIndex == 0;
+    }
+}
@@ -9,15 +9,20 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.CacheControl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
 import jakarta.persistence.*;
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.time.ZonedDateTime;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @SpringBootApplication
 public class App {
@@ -72,6 +77,11 @@ class User {
     @Column(name = "created_at", columnDefinition = "TIMESTAMP WITH TIME ZONE DEFAULT NOW()")
     private java.time.ZonedDateTime createdAt;
 
+    // Incremented by Hibernate on every update; drives the profile ETag
+    @Version
+    @Column(name = "row_version", nullable = false)
+    private Long rowVersion;
+
     // Constructors
     public User() {
         this.createdAt = java.time.ZonedDateTime.now();
@@ -133,6 +143,14 @@ class User {
     public void setCreatedAt(java.time.ZonedDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Long getRowVersion() {
+        return rowVersion;
+    }
+
+    public void setRowVersion(Long rowVersion) {
+        this.rowVersion = rowVersion;
+    }
 }
 
 // ==================== SESSION ENTITY ====================
@@ -234,11 +252,111 @@ class Session {
     }
 }
 
+// ==================== FRIEND REQUEST ENTITY ====================
+@Entity
+@Table(name = "requests")
+class FriendRequest {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(name = "request_id", columnDefinition = "UUID")
+    private UUID requestId;
+
+    @Column(name = "sender_id", nullable = false)
+    private UUID senderId;
+
+    @Column(name = "receiver_id", nullable = false)
+    private UUID receiverId;
+
+    @Column(name = "created_at", columnDefinition = "TIMESTAMP WITH TIME ZONE DEFAULT NOW()")
+    private ZonedDateTime createdAt;
+
+    // NULL = pending, TRUE = approved, FALSE = rejected
+    @Column(name = "is_approved")
+    private Boolean isApproved;
+
+    @Column(name = "responded_at", columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private ZonedDateTime respondedAt;
+
+    // Constructors
+    public FriendRequest() {
+        this.createdAt = ZonedDateTime.now();
+    }
+
+    public FriendRequest(UUID senderId, UUID receiverId) {
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.createdAt = ZonedDateTime.now();
+    }
+
+    // Getters and Setters
+    public UUID getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(UUID requestId) {
+        this.requestId = requestId;
+    }
+
+    public UUID getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(UUID senderId) {
+        this.senderId = senderId;
+    }
+
+    public UUID getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(UUID receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Boolean getIsApproved() {
+        return isApproved;
+    }
+
+    public void setIsApproved(Boolean isApproved) {
+        this.isApproved = isApproved;
+    }
+
+    public ZonedDateTime getRespondedAt() {
+        return respondedAt;
+    }
+
+    public void setRespondedAt(ZonedDateTime respondedAt) {
+        this.respondedAt = respondedAt;
+    }
+}
+
 // ==================== REPOSITORIES ====================
 interface UserRepository extends JpaRepository<User, java.util.UUID> {
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
+
+    // Just the searchable columns, so building the search index skips user_image
+    @Query("SELECT u.userId, u.username, u.fullName FROM User u")
+    List<Object[]> findSearchFields();
+
+    @Query("SELECT u.userId, u.username, u.fullName FROM User u WHERE u.userId = :userId")
+    List<Object[]> findSearchFieldsById(UUID userId);
+
+    // Id and version only, for answering If-None-Match without loading the row
+    @Query("SELECT u.userId, u.rowVersion FROM User u WHERE u.userId = :userId")
+    List<Object[]> findVersionById(UUID userId);
+
+    @Query("SELECT u.userId, u.rowVersion FROM User u WHERE u.username = :username")
+    List<Object[]> findVersionByUsername(String username);
 }
 
 interface SessionRepository extends JpaRepository<Session, UUID> {
@@ -252,6 +370,53 @@ interface SessionRepository extends JpaRepository<Session, UUID> {
     void deactivateSession(String token, ZonedDateTime logoutTime);
 }
 
+interface FriendRequestRepository extends JpaRepository<FriendRequest, UUID> {
+    // Pending count for the receiver plus one page of pending requests with
+    // sender profile columns. The count comes from a one-row subquery so it is
+    // still returned (with NULL request columns) when the page is empty.
+    String INBOX_PAGE_SELECT = "SELECT c.pending_count, p.request_id, p.sender_id, p.created_at, "
+            + "p.username, p.full_name, p.avatar_hash "
+            + "FROM (SELECT COUNT(*) AS pending_count FROM requests "
+            + "      WHERE receiver_id = :receiverId AND is_approved IS NULL) c "
+            + "LEFT JOIN LATERAL ("
+            + "  SELECT r.request_id, r.sender_id, r.created_at, u.username, u.full_name, "
+            + "         md5(u.user_image) AS avatar_hash "
+            + "  FROM requests r JOIN users u ON u.user_id = r.sender_id "
+            + "  WHERE r.receiver_id = :receiverId AND r.is_approved IS NULL ";
+    String INBOX_PAGE_ORDER = "  ORDER BY r.created_at DESC, r.request_id DESC LIMIT :limit"
+            + ") p ON TRUE";
+
+    @Query(value = INBOX_PAGE_SELECT + INBOX_PAGE_ORDER, nativeQuery = true)
+    List<Object[]> findInboxFirstPage(UUID receiverId, int limit);
+
+    // Keyset continuation: rows strictly after the (created_at, request_id) cursor
+    @Query(value = INBOX_PAGE_SELECT
+            + "  AND (r.created_at, r.request_id) < (:beforeTime, :beforeId) "
+            + INBOX_PAGE_ORDER, nativeQuery = true)
+    List<Object[]> findInboxPageBefore(UUID receiverId, ZonedDateTime beforeTime, UUID beforeId, int limit);
+
+    long countByReceiverIdAndIsApprovedIsNull(UUID receiverId);
+
+    @Query("SELECT COUNT(r) > 0 FROM FriendRequest r WHERE ((r.senderId = :userId1 AND r.receiverId = :userId2) "
+            + "OR (r.senderId = :userId2 AND r.receiverId = :userId1)) AND r.isApproved = true")
+    boolean existsApprovedBetween(UUID userId1, UUID userId2);
+
+    // Any request between the two users, in either direction and any state
+    @Query("SELECT COUNT(r) > 0 FROM FriendRequest r WHERE (r.senderId = :userId1 AND r.receiverId = :userId2) "
+            + "OR (r.senderId = :userId2 AND r.receiverId = :userId1)")
+    boolean existsBetween(UUID userId1, UUID userId2);
+
+    // Only the two endpoints are needed to build the friend graph
+    @Query("SELECT r.senderId, r.receiverId FROM FriendRequest r WHERE r.isApproved = true")
+    List<Object[]> findApprovedPairs();
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FriendRequest r WHERE (r.senderId = :userId1 AND r.receiverId = :userId2) "
+            + "OR (r.senderId = :userId2 AND r.receiverId = :userId1)")
+    int deleteBetween(UUID userId1, UUID userId2);
+}
+
 // ==================== REST API CONTROLLER ====================
 @RestController
 @RequestMapping("/api/users")
@@ -263,6 +428,18 @@ class UserController {
     @Autowired
     private SessionRepository sessionRepo;
 
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
     // Token generator utility
     private String generateToken() {
         SecureRandom random = new SecureRandom();
@@ -285,6 +462,7 @@ class UserController {
     }
 
     // Get all users
+    @ReplicaRead(maxStalenessMs = 5000)
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
         try {
@@ -295,20 +473,119 @@ class UserController {
         }
     }
 
+    // Search users by username / full name (prefix and typo tolerant)
+    @GetMapping("/search")
+    public ResponseEntity<?> searchUsers(@RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(searchIndex.search(query, limit));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Search failed: " + e.getMessage()));
+        }
+    }
+
+    // Profile ETag: user id + row version, cheap to compare. Weak because the
+    // body is gzipped on the wire (Tomcat skips compression for strong ETags).
+    private String profileETag(UUID userId, Long rowVersion) {
+        return "W/\"" + userId + "-v" + rowVersion + "\"";
+    }
+
+    // If-None-Match may hold a list of (possibly weak) tags or "*"; compared weakly
+    private boolean eTagMatches(String ifNoneMatch, String eTag) {
+        String opaque = eTag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 304 if the client's copy is current, otherwise null (caller loads the full row)
+    private ResponseEntity<User> notModified(List<Object[]> version, String ifNoneMatch) {
+        if (version.isEmpty()) {
+            return null;
+        }
+        String eTag = profileETag((UUID) version.get(0)[0], (Long) version.get(0)[1]);
+        if (!eTagMatches(ifNoneMatch, eTag)) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    private ResponseEntity<User> profileResponse(Optional<User> user) {
+        return user.map(u -> ResponseEntity.ok()
+                .eTag(profileETag(u.getUserId(), u.getRowVersion()))
+                .cacheControl(CacheControl.noCache())
+                .body(u))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     // Get user by ID
+    @ReplicaRead
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable java.util.UUID id) {
-        Optional<User> user = repo.findById(id);
-        return user.map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<User> getUserById(@PathVariable java.util.UUID id,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            ResponseEntity<User> notModified = notModified(repo.findVersionById(id), ifNoneMatch);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        return profileResponse(repo.findById(id));
+    }
+
+    // Friend suggestions (non-friends ranked by mutual friends)
+    @ReplicaRead(maxStalenessMs = 5000)
+    @GetMapping("/{id}/suggestions")
+    public ResponseEntity<?> getFriendSuggestions(@PathVariable UUID id,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<FriendSuggestion> suggestions = friendGraph.suggestFriends(id, limit);
+
+            // One query for all suggested profiles
+            Map<UUID, User> users = repo.findAllById(
+                    suggestions.stream().map(FriendSuggestion::getUserId).collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(User::getUserId, Function.identity()));
+
+            List<SuggestionResponse> response = suggestions.stream()
+                    .filter(s -> users.containsKey(s.getUserId()))
+                    .map(s -> {
+                        User user = users.get(s.getUserId());
+                        return new SuggestionResponse(user.getUserId(), user.getUsername(),
+                                user.getFullName(), user.getUserImage(), s.getMutualFriends());
+                    })
+                    .collect(Collectors.toList());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to fetch suggestions: " + e.getMessage()));
+        }
     }
 
     // Get user by username
+    @ReplicaRead
     @GetMapping("/username/{username}")
-    public ResponseEntity<User> getUserByUsername(@PathVariable String username) {
-        Optional<User> user = repo.findByUsername(username);
-        return user.map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<User> getUserByUsername(@PathVariable String username,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            ResponseEntity<User> notModified = notModified(repo.findVersionByUsername(username), ifNoneMatch);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        return profileResponse(repo.findByUsername(username));
     }
 
     // Create new user (Sign Up)
@@ -337,11 +614,15 @@ class UserController {
                         .body(new ErrorResponse("Username already exists"));
             }
 
-            // Set created timestamp
+            // Set created timestamp; version always starts at 0 regardless of the request body
             user.setCreatedAt(ZonedDateTime.now());
+            user.setRowVersion(null);
 
             // Save user to database
             User savedUser = repo.save(user);
+            searchIndex.addOrUpdate(savedUser);
+            invalidationBus.publish(
+                    new InvalidationEvent(InvalidationEvent.Type.USER, savedUser.getUserId().toString()));
 
             // Generate session token
             String token = generateToken();
@@ -419,22 +700,38 @@ class UserController {
         }
     }
 
-    // Update user
+    // Update user. A concurrent update bumps row_version and fails this save;
+    // re-read and apply once more (last writer wins) before reporting a conflict.
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable java.util.UUID id, @RequestBody User userDetails) {
-        Optional<User> optionalUser = repo.findById(id);
+    public ResponseEntity<?> updateUser(@PathVariable java.util.UUID id, @RequestBody User userDetails) {
+        for (int attempt = 1;; attempt++) {
+            Optional<User> optionalUser = repo.findById(id);
+
+            if (optionalUser.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
 
-        if (optionalUser.isPresent()) {
             User user = optionalUser.get();
             user.setUsername(userDetails.getUsername());
             user.setFullName(userDetails.getFullName());
             user.setPassword(userDetails.getPassword());
             user.setUserImage(userDetails.getUserImage());
 
-            User updatedUser = repo.save(user);
+            User updatedUser;
+            try {
+                updatedUser = repo.save(user);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (attempt < 2) {
+                    continue;
+                }
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new ErrorResponse("User was modified concurrently, please retry"));
+            }
+
+            searchIndex.addOrUpdate(updatedUser);
+            sessionCache.evictUser(id);
+            invalidationBus.publish(new InvalidationEvent(InvalidationEvent.Type.USER, id.toString()));
             return ResponseEntity.ok(updatedUser);
-        } else {
-            return ResponseEntity.notFound().build();
         }
     }
 
@@ -443,6 +740,10 @@ class UserController {
     public ResponseEntity<Void> deleteUser(@PathVariable java.util.UUID id) {
         if (repo.existsById(id)) {
             repo.deleteById(id);
+            friendGraph.removeUser(id);
+            searchIndex.remove(id);
+            sessionCache.evictUser(id);
+            invalidationBus.publish(new InvalidationEvent(InvalidationEvent.Type.USER_DELETED, id.toString()));
             return ResponseEntity.noContent().build();
         } else {
             return ResponseEntity.notFound().build();
@@ -467,6 +768,8 @@ class UserController {
                 session.setIsActive(false);
                 session.setLogoutTime(ZonedDateTime.now());
                 sessionRepo.save(session);
+                sessionCache.evictToken(session.getToken());
+                invalidationBus.publish(new InvalidationEvent(InvalidationEvent.Type.SESSION, session.getToken()));
 
                 return ResponseEntity.ok(new MessageResponse("Logout successful"));
             } else {
@@ -480,7 +783,8 @@ class UserController {
         }
     }
 
-    // Validate token
+    // Validate token (stays on the primary: a lagging replica could still show a
+    // logged-out session as active, and the result is cached by SessionCache)
     @PostMapping("/validate-token")
     public ResponseEntity<?> validateToken(@RequestBody ValidateTokenRequest tokenRequest) {
         try {
@@ -489,11 +793,18 @@ class UserController {
                         .body(new ErrorResponse("Token is required"));
             }
 
-            Optional<Session> sessionOpt = sessionRepo.findByToken(tokenRequest.getToken());
+            TokenValidationResponse cached = sessionCache.get(tokenRequest.getToken());
+            if (cached != null) {
+                return ResponseEntity.ok(cached);
+            }
+
+            long cacheGeneration = sessionCache.generation();
+            Optional<Session> sessionOpt = ReadRoutingContext.onPrimary(
+                    () -> sessionRepo.findByToken(tokenRequest.getToken()));
 
             if (sessionOpt.isPresent() && sessionOpt.get().getIsActive()) {
                 Session session = sessionOpt.get();
-                Optional<User> userOpt = repo.findById(session.getUserId());
+                Optional<User> userOpt = ReadRoutingContext.onPrimary(() -> repo.findById(session.getUserId()));
 
                 if (userOpt.isPresent()) {
                     User user = userOpt.get();
@@ -504,6 +815,7 @@ class UserController {
                             user.getFullName(),
                             user.getUserImage(),
                             session.getSessionId());
+                    sessionCache.put(tokenRequest.getToken(), response, cacheGeneration);
                     return ResponseEntity.ok(response);
                 }
             }
@@ -518,6 +830,7 @@ class UserController {
     }
 
     // Get active sessions for user
+    @ReplicaRead
     @GetMapping("/sessions/{userId}")
     public ResponseEntity<?> getUserSessions(@PathVariable UUID userId) {
         try {
@@ -830,6 +1143,68 @@ class TokenValidationResponse {
     }
 }
 
+// Friend Suggestion Response
+class SuggestionResponse {
+    private UUID userId;
+    private String username;
+    private String fullName;
+    private String userImage;
+    private int mutualFriends;
+
+    public SuggestionResponse() {
+    }
+
+    public SuggestionResponse(UUID userId, String username, String fullName, String userImage,
+            int mutualFriends) {
+        this.userId = userId;
+        this.username = username;
+        this.fullName = fullName;
+        this.userImage = userImage;
+        this.mutualFriends = mutualFriends;
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getUserImage() {
+        return userImage;
+    }
+
+    public void setUserImage(String userImage) {
+        this.userImage = userImage;
+    }
+
+    public int getMutualFriends() {
+        return mutualFriends;
+    }
+
+    public void setMutualFriends(int mutualFriends) {
+        this.mutualFriends = mutualFriends;
+    }
+}
+
 // Error Response
 class ErrorResponse {
     private String error;
@@ -0,0 +1,380 @@
+package com.myapp;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ==================== INVALIDATION EVENT ====================
+// What changed; every node drops (or re-reads) whatever it caches for the key.
+class InvalidationEvent {
+    enum Type {
+        USER,           // profile changed, key = userId
+        USER_DELETED,   // key = userId
+        SESSION,        // session ended, key = token
+        FRIENDSHIP,     // request state between two users changed, key = userId1:userId2
+        ALL             // sender dropped events, flush everything; key is empty
+    }
+
+    static final InvalidationEvent FLUSH_ALL = new InvalidationEvent(Type.ALL, "");
+
+    private final Type type;
+    private final String key;
+
+    public InvalidationEvent(Type type, String key) {
+        this.type = type;
+        this.key = key;
+    }
+
+    public static InvalidationEvent friendship(UUID userId1, UUID userId2) {
+        return new InvalidationEvent(Type.FRIENDSHIP, userId1 + ":" + userId2);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public UUID getUserId() {
+        return UUID.fromString(key);
+    }
+
+    public UUID[] getUserPair() {
+        int split = key.indexOf(':');
+        return new UUID[] { UUID.fromString(key.substring(0, split)), UUID.fromString(key.substring(split + 1)) };
+    }
+
+    // One line per event on the wire: "<type name>=<key>". Names rather than
+    // ordinals, so nodes running different versions still agree on the types.
+    String encode() {
+        return type.name() + "=" + key;
+    }
+
+    // Throws a RuntimeException for an unknown type or a malformed key
+    static InvalidationEvent decode(String line) {
+        int split = line.indexOf('=');
+        if (split < 0) {
+            throw new IllegalArgumentException("Missing '=' in invalidation event: " + line);
+        }
+        InvalidationEvent event = new InvalidationEvent(Type.valueOf(line.substring(0, split)),
+                line.substring(split + 1));
+        if (event.type == Type.FRIENDSHIP) {
+            event.getUserPair();
+        } else if (event.type == Type.USER || event.type == Type.USER_DELETED) {
+            event.getUserId();
+        }
+        return event;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof InvalidationEvent)) {
+            return false;
+        }
+        InvalidationEvent other = (InvalidationEvent) o;
+        return type == other.type && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, key);
+    }
+}
+
+// ==================== INVALIDATION LISTENER ====================
+// Implemented by every in-process cache; called for changes made on other nodes.
+interface CacheInvalidationListener {
+    void onInvalidation(Collection<InvalidationEvent> events);
+
+    // Events may have been missed (listener reconnected, or too many to apply one by one)
+    void onFullFlush();
+}
+
+// ==================== CACHE INVALIDATION BUS ====================
+// Keeps per-node caches coherent across replicas with Postgres LISTEN/NOTIFY.
+// Publishing is batched: events are queued and sent as one pg_notify per
+// flush interval through the normal pool. Receiving uses one dedicated JDBC
+// connection outside the Hikari pool that LISTENs on the channel; notifications
+// that arrive together are de-duplicated and applied as a batch. Whenever that
+// connection is (re)established every cache is flushed, because anything sent
+// while it was down is lost, and isConnected() is false until then.
+@Component
+class CacheInvalidationBus {
+
+    // NOTIFY payloads must stay under 8000 bytes
+    private static final int MAX_PAYLOAD_CHARS = 7000;
+
+    // A batch bigger than this is cheaper to handle as a full flush
+    private static final int MAX_APPLY_BATCH = 500;
+
+    private static final int MAX_QUEUED = 10000;
+    private static final long IDLE_PING_MILLIS = 30000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // A provider rather than a list, so listeners can depend on the bus themselves
+    @Autowired
+    private ObjectProvider<CacheInvalidationListener> listeners;
+
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.invalidation.channel:cache_invalidation}")
+    private String channel;
+
+    @Value("${cache.invalidation.flush-interval-ms:25}")
+    private long flushIntervalMillis;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    // Lets a node skip its own notifications, it already applied them locally
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentLinkedQueue<InvalidationEvent> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outboxSize = new AtomicInteger();
+    // Set when publish() had to drop an event; the next flush tells every node to flush
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    private ScheduledExecutorService publisher;
+    private Thread listenerThread;
+    private volatile boolean running;
+    private volatile boolean connected;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::flushOutbox, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        listenerThread = new Thread(this::listenLoop, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        connected = false;
+        if (publisher != null) {
+            publisher.shutdown();
+            flushOutbox();
+        }
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    // False while changes from other nodes may not be arriving (listener down or not
+    // yet started), so caches must not serve. Without the bus there are no other nodes.
+    public boolean isConnected() {
+        return !enabled || connected;
+    }
+
+    // Queue a change made on this node for the other nodes
+    public void publish(InvalidationEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (outboxSize.incrementAndGet() > MAX_QUEUED) {
+            // Publisher cannot keep up (database down?); drop rather than grow unbounded,
+            // and make the other nodes flush instead since they will miss this event
+            outboxSize.decrementAndGet();
+            overflowed.set(true);
+            return;
+        }
+        outbox.add(event);
+    }
+
+    private void flushOutbox() {
+        if (overflowed.getAndSet(false)) {
+            // A full flush covers everything queued so far
+            while (outbox.poll() != null) {
+                outboxSize.decrementAndGet();
+            }
+            try {
+                sendNotify(nodeId + "\n" + InvalidationEvent.FLUSH_ALL.encode());
+            } catch (Exception e) {
+                System.err.println("Cache invalidation flush broadcast failed, retrying: " + e.getMessage());
+                overflowed.set(true);
+            }
+            return;
+        }
+
+        Set<InvalidationEvent> batch = new LinkedHashSet<>();
+        InvalidationEvent event;
+        while ((event = outbox.poll()) != null) {
+            outboxSize.decrementAndGet();
+            batch.add(event);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<InvalidationEvent> unsent = new ArrayList<>(batch);
+        try {
+            StringBuilder payload = new StringBuilder(nodeId);
+            int inPayload = 0;
+            for (InvalidationEvent queued : batch) {
+                String line = queued.encode();
+                if (payload.length() + 1 + line.length() > MAX_PAYLOAD_CHARS) {
+                    sendNotify(payload.toString());
+                    unsent.subList(0, inPayload).clear();
+                    payload = new StringBuilder(nodeId);
+                    inPayload = 0;
+                }
+                payload.append('\n').append(line);
+                inPayload++;
+            }
+            sendNotify(payload.toString());
+        } catch (Exception e) {
+            System.err.println("Cache invalidation publish failed, retrying: " + e.getMessage());
+            for (InvalidationEvent retry : unsent) {
+                publish(retry);
+            }
+        }
+    }
+
+    private void sendNotify(String payload) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel, payload);
+    }
+
+    private void listenLoop() {
+        long backoff = 1000;
+        while (running) {
+            // Deliberately not from the pool: this connection is held forever
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                backoff = 1000;
+                flushAll();
+                connected = true;
+
+                long lastActivity = System.currentTimeMillis();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications == null || notifications.length == 0) {
+                        if (System.currentTimeMillis() - lastActivity > IDLE_PING_MILLIS) {
+                            // Surfaces a silently dropped connection
+                            try (Statement statement = connection.createStatement()) {
+                                statement.execute("SELECT 1");
+                            }
+                            lastActivity = System.currentTimeMillis();
+                        }
+                        continue;
+                    }
+                    lastActivity = System.currentTimeMillis();
+
+                    // Coalesce everything already waiting into one batch
+                    Set<InvalidationEvent> batch = new LinkedHashSet<>();
+                    collect(notifications, batch);
+                    while ((notifications = pgConnection.getNotifications(-1)) != null && notifications.length > 0) {
+                        collect(notifications, batch);
+                    }
+                    apply(batch);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Anything unexpected also goes through reconnect, which flushes every cache
+                connected = false;
+                if (!running) {
+                    return;
+                }
+                System.err.println("Cache invalidation listener disconnected, retrying in " + backoff + "ms: "
+                        + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void collect(PGNotification[] notifications, Set<InvalidationEvent> batch) {
+        for (PGNotification notification : notifications) {
+            String[] lines = notification.getParameter().split("\n");
+            if (lines.length == 0 || lines[0].equals(nodeId)) {
+                continue;
+            }
+            for (int i = 1; i < lines.length; i++) {
+                if (lines[i].isEmpty()) {
+                    continue;
+                }
+                try {
+                    batch.add(InvalidationEvent.decode(lines[i]));
+                } catch (RuntimeException e) {
+                    // Foreign or newer-version payload: skip the line, keep the rest
+                    System.err.println("Skipping bad cache invalidation event: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void apply(Set<InvalidationEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() > MAX_APPLY_BATCH || batch.contains(InvalidationEvent.FLUSH_ALL)) {
+            flushAll();
+            return;
+        }
+        for (CacheInvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidation(batch);
+            } catch (Exception e) {
+                e.printStackTrace();
+                listener.onFullFlush();
+            }
+        }
+    }
+
+    private void flushAll() {
+        for (CacheInvalidationListener listener : listeners) {
+            listener.onFullFlush();
+        }
+    }
+}
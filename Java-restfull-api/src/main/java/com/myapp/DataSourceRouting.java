@@ -0,0 +1,266 @@
+package com.myapp;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+
+// ==================== REPLICA READ ANNOTATION ====================
+// Marks a read-only endpoint whose queries may go to the replica pool, as long
+// as the replica is at most maxStalenessMs behind the primary.
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@interface ReplicaRead {
+    long maxStalenessMs() default 1000;
+}
+
+// ==================== READ ROUTING CONTEXT ====================
+// Staleness tolerance of the endpoint handling the current request (null = none)
+class ReadRoutingContext {
+    private static final long PRIMARY_ONLY = -1;
+    private static final ThreadLocal<Long> MAX_STALENESS_MS = new ThreadLocal<>();
+
+    // Runs work with every query on the primary, whatever the endpoint allows.
+    // For loads that must not miss recent writes, e.g. caches that are only
+    // corrected by invalidation events afterwards.
+    static <T> T onPrimary(Supplier<T> work) {
+        Long previous = MAX_STALENESS_MS.get();
+        MAX_STALENESS_MS.set(PRIMARY_ONLY);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                MAX_STALENESS_MS.remove();
+            } else {
+                MAX_STALENESS_MS.set(previous);
+            }
+        }
+    }
+
+    static Long maxStalenessMs() {
+        return MAX_STALENESS_MS.get();
+    }
+
+    static void set(long maxStalenessMs) {
+        MAX_STALENESS_MS.set(maxStalenessMs);
+    }
+
+    static void clear() {
+        MAX_STALENESS_MS.remove();
+    }
+}
+
+class ReplicaReadInterceptor implements HandlerInterceptor {
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            ReplicaRead replicaRead = ((HandlerMethod) handler).getMethodAnnotation(ReplicaRead.class);
+            if (replicaRead != null) {
+                ReadRoutingContext.set(replicaRead.maxStalenessMs());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        ReadRoutingContext.clear();
+    }
+}
+
+// ==================== ROUTING DATA SOURCE ====================
+// Picks the pool per connection: writes (and anything not explicitly
+// read-only) go to the primary; read-only transactions and @ReplicaRead
+// endpoints go to the replica when its measured lag is within tolerance.
+// Sits behind a LazyConnectionDataSourceProxy so the decision is made at the
+// first statement, after the transaction's read-only flag has been set.
+class RoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    // Caught up (everything received is replayed) only bounds staleness while the
+    // receiver is streaming: the data is then as fresh as the last message from the
+    // primary. A disconnected receiver (no row, or another status) falls through to
+    // the age of the last replayed commit, which keeps growing. Seeing status needs
+    // pg_read_all_stats; without it the replica is only used while commits flow.
+    private static final String LAG_QUERY = "SELECT CASE "
+            + "WHEN NOT pg_is_in_recovery() THEN 0 "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() AND r.status = 'streaming' "
+            + "THEN GREATEST(0, (EXTRACT(EPOCH FROM now() - r.last_msg_receipt_time) * 1000)::bigint) "
+            + "ELSE COALESCE((EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, "
+            + "9223372036854775807) END "
+            + "FROM (SELECT 1) AS one LEFT JOIN pg_stat_wal_receiver r ON true";
+
+    private final DataSource replica;
+    private final long defaultMaxStalenessMs;
+    private final long lagCheckIntervalMs;
+    private final AtomicBoolean monitorStarted = new AtomicBoolean();
+    private ScheduledExecutorService lagMonitor;
+
+    // Replica lag as of the last sample; unknown counts as too stale
+    private volatile long sampledLagMs = Long.MAX_VALUE;
+    private volatile long sampledAt = System.currentTimeMillis();
+
+    RoutingDataSource(DataSource primary, DataSource replica, long defaultMaxStalenessMs, long lagCheckIntervalMs) {
+        this.replica = replica;
+        this.defaultMaxStalenessMs = defaultMaxStalenessMs;
+        this.lagCheckIntervalMs = lagCheckIntervalMs;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        if (replica != null) {
+            targets.put(REPLICA, replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replica == null) {
+            return PRIMARY;
+        }
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !readOnly) {
+            return PRIMARY;
+        }
+
+        Long maxStalenessMs = ReadRoutingContext.maxStalenessMs();
+        if (maxStalenessMs == null) {
+            if (!readOnly) {
+                return PRIMARY;
+            }
+            maxStalenessMs = defaultMaxStalenessMs;
+        }
+        if (maxStalenessMs < 0) {
+            return PRIMARY;
+        }
+
+        startLagMonitor();
+        // The sample itself ages, so add the time since it was taken
+        long lagMs = sampledLagMs == Long.MAX_VALUE ? Long.MAX_VALUE
+                : sampledLagMs + (System.currentTimeMillis() - sampledAt);
+        return lagMs <= maxStalenessMs ? REPLICA : PRIMARY;
+    }
+
+    // Started on first use so application startup does not connect to the replica
+    private void startLagMonitor() {
+        if (!monitorStarted.compareAndSet(false, true)) {
+            return;
+        }
+        lagMonitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagMonitor.scheduleWithFixedDelay(this::sampleLag, 0, lagCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sampleLag() {
+        try (Connection connection = replica.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+            rs.next();
+            sampledLagMs = rs.getLong(1);
+        } catch (Exception e) {
+            sampledLagMs = Long.MAX_VALUE;
+        }
+        sampledAt = System.currentTimeMillis();
+    }
+
+    // Called by the container on shutdown (inferred destroy method)
+    public void close() {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+        }
+        if (replica instanceof HikariDataSource) {
+            ((HikariDataSource) replica).close();
+        }
+    }
+}
+
+// ==================== DATASOURCE CONFIGURATION ====================
+// Primary pool from spring.datasource.*; optional replica pool from
+// app.datasource.replica.* (no replica url = everything uses the primary).
+@Configuration
+class DataSourceRoutingConfig implements WebMvcConfigurer {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryPool(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("primary");
+        return pool;
+    }
+
+    // Built here rather than as a conditional bean so the choice is made at
+    // runtime (an AOT-processed context freezes bean conditions at build time)
+    @Bean
+    RoutingDataSource routingDataSource(@Qualifier("primaryPool") DataSource primaryPool,
+            DataSourceProperties primaryProperties, Environment env) {
+        HikariDataSource replicaPool = null;
+        String replicaUrl = env.getProperty("app.datasource.replica.url");
+        if (replicaUrl != null && !replicaUrl.isBlank()) {
+            replicaPool = new HikariDataSource();
+            replicaPool.setJdbcUrl(replicaUrl);
+            replicaPool.setUsername(
+                    env.getProperty("app.datasource.replica.username", primaryProperties.getUsername()));
+            replicaPool.setPassword(
+                    env.getProperty("app.datasource.replica.password", primaryProperties.getPassword()));
+            replicaPool.setPoolName("replica");
+            replicaPool.setReadOnly(true);
+            Binder.get(env).bind("app.datasource.replica.hikari", Bindable.ofInstance(replicaPool));
+        }
+        return new RoutingDataSource(primaryPool, replicaPool,
+                env.getProperty("app.datasource.replica.default-max-staleness-ms", Long.class, -1L),
+                env.getProperty("app.datasource.replica.lag-check-interval-ms", Long.class, 500L));
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(RoutingDataSource routingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setTargetDataSource(routingDataSource);
+        // Given explicitly, otherwise the proxy opens a connection at startup to read them
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReplicaReadInterceptor());
+    }
+}
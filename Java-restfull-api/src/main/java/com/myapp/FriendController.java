@@ -0,0 +1,539 @@
+package com.myapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+// ==================== FRIENDS API CONTROLLER ====================
+@RestController
+@RequestMapping("/api/friends")
+class FriendController {
+
+    private static final int MAX_PAGE_SIZE = 50;
+
+    @Autowired
+    private FriendRequestRepository requestRepo;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    // Get friends of a user
+    @GetMapping("/{userId}")
+    public ResponseEntity<?> getFriends(@PathVariable UUID userId) {
+        try {
+            List<UUID> friends = friendGraph.getFriends(userId);
+            return ResponseEntity.ok(new FriendListResponse(userId, friends.size(), friends));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to fetch friends: " + e.getMessage()));
+        }
+    }
+
+    // Get friend count
+    @GetMapping("/{userId}/count")
+    public ResponseEntity<?> getFriendCount(@PathVariable UUID userId) {
+        try {
+            return ResponseEntity.ok(new FriendCountResponse(userId, friendGraph.getFriendCount(userId)));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to fetch friend count: " + e.getMessage()));
+        }
+    }
+
+    // Check if two users are friends
+    @GetMapping("/{userId}/is-friend/{otherUserId}")
+    public ResponseEntity<?> areFriends(@PathVariable UUID userId, @PathVariable UUID otherUserId) {
+        try {
+            boolean friends = friendGraph.areFriends(userId, otherUserId);
+            return ResponseEntity.ok(new FriendshipResponse(userId, otherUserId, friends));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to check friendship: " + e.getMessage()));
+        }
+    }
+
+    // Native queries hand back whatever the driver maps timestamptz to
+    private static ZonedDateTime toZonedDateTime(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof ZonedDateTime) {
+            return (ZonedDateTime) value;
+        } else if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toZonedDateTime();
+        } else if (value instanceof Instant) {
+            return ((Instant) value).atZone(ZoneOffset.UTC);
+        } else {
+            return ((Timestamp) value).toInstant().atZone(ZoneOffset.UTC);
+        }
+    }
+
+    // Pending requests received by a user, newest first, with the pending count
+    @ReplicaRead
+    @GetMapping("/requests")
+    public ResponseEntity<?> getPendingRequests(@RequestParam UUID userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime before,
+            @RequestParam(required = false) UUID beforeId,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            if ((before == null) != (beforeId == null)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new ErrorResponse("before and beforeId must be given together"));
+            }
+
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            // One extra row tells us whether there is a next page
+            List<Object[]> rows = before == null
+                    ? requestRepo.findInboxFirstPage(userId, pageSize + 1)
+                    : requestRepo.findInboxPageBefore(userId, before, beforeId, pageSize + 1);
+
+            long pendingCount = rows.isEmpty() ? 0 : ((Number) rows.get(0)[0]).longValue();
+            List<PendingRequestItem> items = new ArrayList<>();
+            for (Object[] row : rows) {
+                // Empty page: the count row comes back with NULL request columns
+                if (row[1] == null || items.size() == pageSize) {
+                    continue;
+                }
+                items.add(new PendingRequestItem((UUID) row[1], (UUID) row[2], toZonedDateTime(row[3]),
+                        (String) row[4], (String) row[5], (String) row[6]));
+            }
+
+            FriendRequestInboxResponse response = new FriendRequestInboxResponse(pendingCount, items);
+            if (rows.size() > pageSize) {
+                PendingRequestItem last = items.get(items.size() - 1);
+                response.setNextBefore(last.getCreatedAt());
+                response.setNextBeforeId(last.getRequestId());
+            }
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to fetch friend requests: " + e.getMessage()));
+        }
+    }
+
+    // Send a friend request
+    @PostMapping("/requests")
+    public ResponseEntity<?> sendRequest(@RequestBody SendFriendRequest sendRequest) {
+        try {
+            UUID senderId = sendRequest.getSenderId();
+            UUID receiverId = sendRequest.getReceiverId();
+
+            if (senderId == null || receiverId == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new ErrorResponse("senderId and receiverId are required"));
+            }
+
+            if (senderId.equals(receiverId)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new ErrorResponse("Cannot send a friend request to yourself"));
+            }
+
+            if (requestRepo.existsApprovedBetween(senderId, receiverId)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new ErrorResponse("Users are already friends"));
+            }
+
+            // Checked both ways so a pair never ends up with two rows
+            if (requestRepo.existsBetween(senderId, receiverId)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new ErrorResponse("Friend request already exists"));
+            }
+
+            FriendRequest saved = requestRepo.save(new FriendRequest(senderId, receiverId));
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new RequestActionResponse(saved, requestRepo.countByReceiverIdAndIsApprovedIsNull(senderId)));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to send friend request: " + e.getMessage()));
+        }
+    }
+
+    // Approve a friend request
+    @PutMapping("/requests/{requestId}/approve")
+    public ResponseEntity<?> approveRequest(@PathVariable UUID requestId) {
+        return respond(requestId, true);
+    }
+
+    // Reject a friend request
+    @PutMapping("/requests/{requestId}/reject")
+    public ResponseEntity<?> rejectRequest(@PathVariable UUID requestId) {
+        return respond(requestId, false);
+    }
+
+    // Shared approve/reject; returns the receiver's updated pending count for the badge
+    private ResponseEntity<?> respond(UUID requestId, boolean approve) {
+        try {
+            Optional<FriendRequest> requestOpt = requestRepo.findById(requestId);
+
+            if (requestOpt.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ErrorResponse("Friend request not found"));
+            }
+
+            FriendRequest friendRequest = requestOpt.get();
+            boolean wasApproved = Boolean.TRUE.equals(friendRequest.getIsApproved());
+            friendRequest.setIsApproved(approve);
+            friendRequest.setRespondedAt(ZonedDateTime.now());
+            FriendRequest saved = requestRepo.save(friendRequest);
+
+            if (approve) {
+                friendGraph.addFriendship(saved.getSenderId(), saved.getReceiverId());
+            } else if (wasApproved && !requestRepo.existsApprovedBetween(saved.getSenderId(), saved.getReceiverId())) {
+                // Older data may hold a second approved row for the pair; keep the edge then
+                friendGraph.removeFriendship(saved.getSenderId(), saved.getReceiverId());
+            }
+            invalidationBus.publish(InvalidationEvent.friendship(saved.getSenderId(), saved.getReceiverId()));
+
+            long pendingCount = requestRepo.countByReceiverIdAndIsApprovedIsNull(saved.getReceiverId());
+            return ResponseEntity.ok(new RequestActionResponse(saved, pendingCount));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to " + (approve ? "approve" : "reject") + " request: "
+                            + e.getMessage()));
+        }
+    }
+
+    // Unfriend (removes the request rows in both directions)
+    @DeleteMapping("/{userId}/{friendId}")
+    public ResponseEntity<?> removeFriend(@PathVariable UUID userId, @PathVariable UUID friendId) {
+        try {
+            int deleted = requestRepo.deleteBetween(userId, friendId);
+            friendGraph.removeFriendship(userId, friendId);
+            invalidationBus.publish(InvalidationEvent.friendship(userId, friendId));
+
+            if (deleted == 0) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ErrorResponse("Friendship not found"));
+            }
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Failed to remove friend: " + e.getMessage()));
+        }
+    }
+}
+
+// ==================== FRIEND DTOs ====================
+
+// Friend List Response
+class FriendListResponse {
+    private UUID userId;
+    private int friendCount;
+    private List<UUID> friendIds;
+
+    public FriendListResponse() {
+    }
+
+    public FriendListResponse(UUID userId, int friendCount, List<UUID> friendIds) {
+        this.userId = userId;
+        this.friendCount = friendCount;
+        this.friendIds = friendIds;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public int getFriendCount() {
+        return friendCount;
+    }
+
+    public void setFriendCount(int friendCount) {
+        this.friendCount = friendCount;
+    }
+
+    public List<UUID> getFriendIds() {
+        return friendIds;
+    }
+
+    public void setFriendIds(List<UUID> friendIds) {
+        this.friendIds = friendIds;
+    }
+}
+
+// Friend Count Response
+class FriendCountResponse {
+    private UUID userId;
+    private int friendCount;
+
+    public FriendCountResponse() {
+    }
+
+    public FriendCountResponse(UUID userId, int friendCount) {
+        this.userId = userId;
+        this.friendCount = friendCount;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public int getFriendCount() {
+        return friendCount;
+    }
+
+    public void setFriendCount(int friendCount) {
+        this.friendCount = friendCount;
+    }
+}
+
+// Friendship Check Response
+class FriendshipResponse {
+    private UUID userId;
+    private UUID otherUserId;
+    private Boolean friends;
+
+    public FriendshipResponse() {
+    }
+
+    public FriendshipResponse(UUID userId, UUID otherUserId, Boolean friends) {
+        this.userId = userId;
+        this.otherUserId = otherUserId;
+        this.friends = friends;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public UUID getOtherUserId() {
+        return otherUserId;
+    }
+
+    public void setOtherUserId(UUID otherUserId) {
+        this.otherUserId = otherUserId;
+    }
+
+    public Boolean getFriends() {
+        return friends;
+    }
+
+    public void setFriends(Boolean friends) {
+        this.friends = friends;
+    }
+}
+
+// Send Friend Request
+class SendFriendRequest {
+    private UUID senderId;
+    private UUID receiverId;
+
+    public SendFriendRequest() {
+    }
+
+    public UUID getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(UUID senderId) {
+        this.senderId = senderId;
+    }
+
+    public UUID getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(UUID receiverId) {
+        this.receiverId = receiverId;
+    }
+}
+
+// Send / Approve / Reject Response
+class RequestActionResponse {
+    private FriendRequest request;
+    private long pendingCount;
+
+    public RequestActionResponse() {
+    }
+
+    public RequestActionResponse(FriendRequest request, long pendingCount) {
+        this.request = request;
+        this.pendingCount = pendingCount;
+    }
+
+    public FriendRequest getRequest() {
+        return request;
+    }
+
+    public void setRequest(FriendRequest request) {
+        this.request = request;
+    }
+
+    public long getPendingCount() {
+        return pendingCount;
+    }
+
+    public void setPendingCount(long pendingCount) {
+        this.pendingCount = pendingCount;
+    }
+}
+
+// Pending Request (inbox row)
+class PendingRequestItem {
+    private UUID requestId;
+    private UUID senderId;
+    private ZonedDateTime createdAt;
+    private String senderUsername;
+    private String senderFullName;
+    private String senderAvatarHash;
+
+    public PendingRequestItem() {
+    }
+
+    public PendingRequestItem(UUID requestId, UUID senderId, ZonedDateTime createdAt, String senderUsername,
+            String senderFullName, String senderAvatarHash) {
+        this.requestId = requestId;
+        this.senderId = senderId;
+        this.createdAt = createdAt;
+        this.senderUsername = senderUsername;
+        this.senderFullName = senderFullName;
+        this.senderAvatarHash = senderAvatarHash;
+    }
+
+    public UUID getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(UUID requestId) {
+        this.requestId = requestId;
+    }
+
+    public UUID getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(UUID senderId) {
+        this.senderId = senderId;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getSenderUsername() {
+        return senderUsername;
+    }
+
+    public void setSenderUsername(String senderUsername) {
+        this.senderUsername = senderUsername;
+    }
+
+    public String getSenderFullName() {
+        return senderFullName;
+    }
+
+    public void setSenderFullName(String senderFullName) {
+        this.senderFullName = senderFullName;
+    }
+
+    public String getSenderAvatarHash() {
+        return senderAvatarHash;
+    }
+
+    public void setSenderAvatarHash(String senderAvatarHash) {
+        this.senderAvatarHash = senderAvatarHash;
+    }
+}
+
+// Friend Request Inbox Response (nextBefore / nextBeforeId are null on the last page)
+class FriendRequestInboxResponse {
+    private long pendingCount;
+    private List<PendingRequestItem> requests;
+    private ZonedDateTime nextBefore;
+    private UUID nextBeforeId;
+
+    public FriendRequestInboxResponse() {
+    }
+
+    public FriendRequestInboxResponse(long pendingCount, List<PendingRequestItem> requests) {
+        this.pendingCount = pendingCount;
+        this.requests = requests;
+    }
+
+    public long getPendingCount() {
+        return pendingCount;
+    }
+
+    public void setPendingCount(long pendingCount) {
+        this.pendingCount = pendingCount;
+    }
+
+    public List<PendingRequestItem> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<PendingRequestItem> requests) {
+        this.requests = requests;
+    }
+
+    public ZonedDateTime getNextBefore() {
+        return nextBefore;
+    }
+
+    public void setNextBefore(ZonedDateTime nextBefore) {
+        this.nextBefore = nextBefore;
+    }
+
+    public UUID getNextBeforeId() {
+        return nextBeforeId;
+    }
+
+    public void setNextBeforeId(UUID nextBeforeId) {
+        this.nextBeforeId = nextBeforeId;
+    }
+}
+
+// Friend Suggestion (graph-level result, no profile data)
+class FriendSuggestion {
+    private final UUID userId;
+    private final int mutualFriends;
+
+    public FriendSuggestion(UUID userId, int mutualFriends) {
+        this.userId = userId;
+        this.mutualFriends = mutualFriends;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public int getMutualFriends() {
+        return mutualFriends;
+    }
+}
@@ -0,0 +1,514 @@
+package com.myapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// ==================== FRIEND GRAPH ====================
+// In-memory copy of the approved rows in `requests`. Every user gets a compact
+// int index on first sight and friendships are kept as primitive int sets, so
+// are_friends / get_friend_count no longer have to scan the table per call.
+@Component
+class FriendGraph implements CacheInvalidationListener {
+
+    // Suggestions are computed (and cached) for this many users, callers slice it
+    static final int MAX_SUGGESTIONS = 50;
+
+    // Cached suggestion lists (about 1.5 KB each at 50 suggestions), least recently used dropped
+    private static final int MAX_CACHED_SUGGESTION_LISTS = 10000;
+
+    // Friend-of-friend walks up to this length are counted in a hash table sized
+    // to the walk; longer ones fill a dense per-user counter array in parallel
+    private static final int SPARSE_MAX_TOUCHED = 1 << 17;
+
+    @Autowired
+    private FriendRequestRepository requestRepo;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> indexOf = new HashMap<>();
+    private final List<UUID> userAt = new ArrayList<>();
+    private final List<IntHashSet> adjacency = new ArrayList<>();
+    // Access-ordered, so even get() modifies it and needs the synchronized wrapper
+    private final Map<UUID, List<FriendSuggestion>> suggestionCache = Collections.synchronizedMap(
+            new LinkedHashMap<UUID, List<FriendSuggestion>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, List<FriendSuggestion>> eldest) {
+                    return size() > MAX_CACHED_SUGGESTION_LISTS;
+                }
+            });
+    private volatile boolean loaded;
+
+    // Load lazily so startup does not pay for a full scan of `requests`
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // From the primary: approvals missed here would never be added later
+                rebuild(ReadRoutingContext.onPrimary(requestRepo::findApprovedPairs));
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller must hold the write lock
+    private void rebuild(List<Object[]> pairs) {
+        suggestionCache.clear();
+        indexOf.clear();
+        userAt.clear();
+        adjacency.clear();
+        for (Object[] pair : pairs) {
+            link(indexFor((UUID) pair[0]), indexFor((UUID) pair[1]));
+        }
+    }
+
+    // Caller must hold the write lock
+    private int indexFor(UUID userId) {
+        Integer index = indexOf.get(userId);
+        if (index != null) {
+            return index;
+        }
+        int next = userAt.size();
+        indexOf.put(userId, next);
+        userAt.add(userId);
+        adjacency.add(new IntHashSet());
+        return next;
+    }
+
+    private void link(int a, int b) {
+        adjacency.get(a).add(b);
+        adjacency.get(b).add(a);
+    }
+
+    // An edge a-b changes the suggestions of a, b and every friend of either
+    // (their mutual count with the other endpoint moves). Caller must hold the write lock.
+    private void evictAround(int a, int b) {
+        if (suggestionCache.isEmpty()) {
+            return;
+        }
+        for (int index : new int[] { a, b }) {
+            suggestionCache.remove(userAt.get(index));
+            for (int friend : adjacency.get(index).toArray()) {
+                suggestionCache.remove(userAt.get(friend));
+            }
+        }
+    }
+
+    // Drop the in-memory copy; the next read reloads it from the database
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            suggestionCache.clear();
+            indexOf.clear();
+            userAt.clear();
+            adjacency.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean areFriends(UUID userId1, UUID userId2) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer a = indexOf.get(userId1);
+            Integer b = indexOf.get(userId2);
+            if (a == null || b == null) {
+                return false;
+            }
+            // Probe the smaller set
+            IntHashSet setA = adjacency.get(a);
+            IntHashSet setB = adjacency.get(b);
+            return setA.size() <= setB.size() ? setA.contains(b) : setB.contains(a);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getFriendCount(UUID userId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer index = indexOf.get(userId);
+            return index == null ? 0 : adjacency.get(index).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<UUID> getFriends(UUID userId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer index = indexOf.get(userId);
+            if (index == null) {
+                return new ArrayList<>();
+            }
+            int[] friends = adjacency.get(index).toArray();
+            List<UUID> result = new ArrayList<>(friends.length);
+            for (int friend : friends) {
+                result.add(userAt.get(friend));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called after a request has been approved in the database
+    public void addFriendship(UUID userId1, UUID userId2) {
+        lock.writeLock().lock();
+        try {
+            // Not loaded yet: the first read will pick the row up from the database
+            if (loaded) {
+                int a = indexFor(userId1);
+                int b = indexFor(userId2);
+                evictAround(a, b);
+                link(a, b);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called after the request rows between two users have been deleted
+    public void removeFriendship(UUID userId1, UUID userId2) {
+        lock.writeLock().lock();
+        try {
+            Integer a = indexOf.get(userId1);
+            Integer b = indexOf.get(userId2);
+            if (a != null && b != null) {
+                evictAround(a, b);
+                adjacency.get(a).remove(b);
+                adjacency.get(b).remove(a);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mirrors ON DELETE CASCADE on requests when a user is deleted
+    public void removeUser(UUID userId) {
+        lock.writeLock().lock();
+        try {
+            Integer index = indexOf.get(userId);
+            if (index == null) {
+                return;
+            }
+            IntHashSet friends = adjacency.get(index);
+            suggestionCache.remove(userId);
+            for (int friend : friends.toArray()) {
+                suggestionCache.remove(userAt.get(friend));
+                adjacency.get(friend).remove(index);
+                for (int friendOfFriend : adjacency.get(friend).toArray()) {
+                    suggestionCache.remove(userAt.get(friendOfFriend));
+                }
+            }
+            friends.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Friendship changed on another node: re-read its current state
+    public void refreshFriendship(UUID userId1, UUID userId2) {
+        if (!loaded) {
+            return;
+        }
+        if (ReadRoutingContext.onPrimary(() -> requestRepo.existsApprovedBetween(userId1, userId2))) {
+            addFriendship(userId1, userId2);
+        } else {
+            removeFriendship(userId1, userId2);
+        }
+    }
+
+    @Override
+    public void onInvalidation(Collection<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            if (event.getType() == InvalidationEvent.Type.FRIENDSHIP) {
+                UUID[] pair = event.getUserPair();
+                refreshFriendship(pair[0], pair[1]);
+            } else if (event.getType() == InvalidationEvent.Type.USER_DELETED) {
+                removeUser(event.getUserId());
+            }
+        }
+    }
+
+    @Override
+    public void onFullFlush() {
+        invalidate();
+    }
+
+    // Non-friends ranked by number of mutual friends (friends-of-friends count)
+    public List<FriendSuggestion> suggestFriends(UUID userId, int limit) {
+        ensureLoaded();
+        int k = Math.max(0, Math.min(limit, MAX_SUGGESTIONS));
+        List<FriendSuggestion> cached = suggestionCache.get(userId);
+        if (cached == null) {
+            lock.readLock().lock();
+            try {
+                cached = computeSuggestions(userId);
+                // Still under the read lock, so no graph change can slip in before the put
+                suggestionCache.put(userId, cached);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return cached.size() <= k ? cached : cached.subList(0, k);
+    }
+
+    // Caller must hold the read lock
+    private List<FriendSuggestion> computeSuggestions(UUID userId) {
+        Integer index = indexOf.get(userId);
+        if (index == null) {
+            return List.of();
+        }
+        IntHashSet direct = adjacency.get(index);
+        int[] friends = direct.toArray();
+        long touchedCount = 0;
+        for (int friend : friends) {
+            touchedCount += adjacency.get(friend).size();
+        }
+
+        // Bounded min-heap over (count, index) packed into a long
+        PriorityQueue<Long> top = new PriorityQueue<>();
+        if (touchedCount <= SPARSE_MAX_TOUCHED) {
+            // Work and memory follow the friends-of-friends, not the user count
+            IntCounter mutualCounts = new IntCounter((int) Math.min(touchedCount, userAt.size()));
+            for (int friend : friends) {
+                adjacency.get(friend).forEach(mutualCounts::increment);
+            }
+            mutualCounts.forEach((candidate, mutual) -> offerSuggestion(top, index, direct, candidate, mutual));
+        } else {
+            int userCount = userAt.size();
+            AtomicIntegerArray mutualCounts = new AtomicIntegerArray(userCount);
+            MutualCountTask.count(adjacency, friends, mutualCounts);
+            for (int candidate = 0; candidate < userCount; candidate++) {
+                int mutual = mutualCounts.get(candidate);
+                if (mutual > 0) {
+                    offerSuggestion(top, index, direct, candidate, mutual);
+                }
+            }
+        }
+
+        FriendSuggestion[] ranked = new FriendSuggestion[top.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            long key = top.poll();
+            int candidate = Integer.MAX_VALUE - (int) key;
+            ranked[i] = new FriendSuggestion(userAt.get(candidate), (int) (key >>> 32));
+        }
+        return List.of(ranked);
+    }
+
+    // Ties go to the lower index, so both counting paths rank identically
+    private static void offerSuggestion(PriorityQueue<Long> top, int self, IntHashSet direct, int candidate,
+            int mutual) {
+        if (candidate == self || direct.contains(candidate)) {
+            return;
+        }
+        long key = ((long) mutual << 32) | (Integer.MAX_VALUE - candidate);
+        if (top.size() < MAX_SUGGESTIONS) {
+            top.add(key);
+        } else if (key > top.peek()) {
+            top.poll();
+            top.add(key);
+        }
+    }
+}
+
+// ==================== INT HASH SET ====================
+// Open-addressing set of non-negative ints (linear probing, backward-shift
+// deletion). Avoids boxing every neighbour into an Integer.
+class IntHashSet {
+    private static final int EMPTY = -1;
+
+    private int[] slots;
+    private int size;
+
+    public IntHashSet() {
+        this.slots = newSlots(4);
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int value) {
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask;; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == value) {
+                return true;
+            }
+            if (slot == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    public boolean add(int value) {
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask;; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == value) {
+                return false;
+            }
+            if (slot == EMPTY) {
+                slots[i] = value;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    public boolean remove(int value) {
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != value) {
+            if (slots[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = EMPTY;
+        size--;
+
+        // Shift later entries of the probe run back into the hole
+        for (int j = (i + 1) & mask; slots[j] != EMPTY; j = (j + 1) & mask) {
+            int home = mix(slots[j]) & mask;
+            boolean homeInRun = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!homeInRun) {
+                slots[i] = slots[j];
+                slots[j] = EMPTY;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        slots = newSlots(4);
+        size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int slot : slots) {
+            if (slot != EMPTY) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    // Stops as soon as the action returns false
+    public boolean forEachWhile(IntPredicate action) {
+        for (int slot : slots) {
+            if (slot != EMPTY && !action.test(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int[] toArray() {
+        int[] values = new int[size];
+        int n = 0;
+        for (int slot : slots) {
+            if (slot != EMPTY) {
+                values[n++] = slot;
+            }
+        }
+        return values;
+    }
+
+    private void resize(int capacity) {
+        int[] old = slots;
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value != EMPTY) {
+                int i = mix(value) & mask;
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+}
+
+// ==================== INT COUNTER ====================
+// Open-addressing map from non-negative int to count, sized up front for a
+// known number of distinct keys (no resizing, no removal).
+class IntCounter {
+    private static final int EMPTY = -1;
+
+    interface Visitor {
+        void accept(int key, int count);
+    }
+
+    private final int[] keys;
+    private final int[] counts;
+
+    public IntCounter(int maxKeys) {
+        int capacity = Integer.highestOneBit(Math.max(2, maxKeys) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public void increment(int key) {
+        int mask = keys.length - 1;
+        int h = key * 0x9E3779B9;
+        for (int i = (h ^ (h >>> 16)) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                counts[i]++;
+                return;
+            }
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                counts[i] = 1;
+                return;
+            }
+        }
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.accept(keys[i], counts[i]);
+            }
+        }
+    }
+}
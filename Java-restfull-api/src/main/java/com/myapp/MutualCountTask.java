@@ -0,0 +1,55 @@
+package com.myapp;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// ==================== MUTUAL FRIEND COUNTING ====================
+// Splits a user's friend list across the fork/join pool. Each leaf walks the
+// adjacency sets of its slice of friends and bumps the one shared counter
+// array, so no task allocates (or has to sum) a per-user array of its own.
+// With a single CPU the atomics buy nothing and the caller counts alone.
+class MutualCountTask extends RecursiveAction {
+    private final List<IntHashSet> adjacency;
+    private final int[] friends;
+    private final int from;
+    private final int to;
+    private final AtomicIntegerArray counts;
+    private final int chunk;
+
+    MutualCountTask(List<IntHashSet> adjacency, int[] friends, int from, int to, AtomicIntegerArray counts,
+            int chunk) {
+        this.adjacency = adjacency;
+        this.friends = friends;
+        this.from = from;
+        this.to = to;
+        this.counts = counts;
+        this.chunk = chunk;
+    }
+
+    static void count(List<IntHashSet> adjacency, int[] friends, AtomicIntegerArray counts) {
+        if (Runtime.getRuntime().availableProcessors() <= 1) {
+            for (int friend : friends) {
+                adjacency.get(friend).forEach(index -> counts.setPlain(index, counts.getPlain(index) + 1));
+            }
+            return;
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunk = Math.max(16, friends.length / (pool.getParallelism() * 4) + 1);
+        pool.invoke(new MutualCountTask(adjacency, friends, 0, friends.length, counts, chunk));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= chunk) {
+            for (int i = from; i < to; i++) {
+                adjacency.get(friends[i]).forEach(counts::incrementAndGet);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new MutualCountTask(adjacency, friends, from, mid, counts, chunk),
+                new MutualCountTask(adjacency, friends, mid, to, counts, chunk));
+    }
+}
@@ -0,0 +1,146 @@
+package com.myapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ==================== SESSION CACHE ====================
+// Caches successful validate-token results so repeat checks skip two queries.
+// Entries are dropped on logout / user update / user delete on this node, and
+// through the invalidation bus for changes made on other nodes. The TTL only
+// bounds how long a missed invalidation could live; while the bus is disconnected
+// invalidations are being missed, so the cache is bypassed until it reconnects
+// (which flushes it). Responses carry the user's image, so the cache is bounded
+// by (approximate) bytes as well as entries.
+@Component
+class SessionCache implements CacheInvalidationListener {
+
+    private static final int MAX_ENTRIES = 10000;
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    private static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    // Per-entry overhead on top of the string contents (map node, objects, UUIDs)
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private static class Entry {
+        final TokenValidationResponse response;
+        final long expiresAt;
+        final long bytes;
+
+        Entry(TokenValidationResponse response, long expiresAt, long bytes) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+            this.bytes = bytes;
+        }
+    }
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    private final Map<String, Entry> byToken = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    // Bumped by every eviction, so a lookup that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public TokenValidationResponse get(String token) {
+        if (!invalidationBus.isConnected()) {
+            return null;
+        }
+        Entry entry = byToken.get(token);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            remove(token, entry);
+            return null;
+        }
+        return entry.response;
+    }
+
+    // generationBefore: value of generation() taken before the database lookup
+    public void put(String token, TokenValidationResponse response, long generationBefore) {
+        if (!invalidationBus.isConnected()) {
+            return;
+        }
+        Entry entry = new Entry(response, System.currentTimeMillis() + TTL_MILLIS, sizeOf(token, response));
+        if (byToken.size() >= MAX_ENTRIES || bytes.get() + entry.bytes > MAX_BYTES) {
+            clear();
+        }
+        Entry previous = byToken.put(token, entry);
+        bytes.addAndGet(entry.bytes - (previous == null ? 0 : previous.bytes));
+        if (generation.get() != generationBefore) {
+            remove(token, entry);
+        }
+    }
+
+    public void evictToken(String token) {
+        generation.incrementAndGet();
+        Entry entry = byToken.get(token);
+        if (entry != null) {
+            remove(token, entry);
+        }
+    }
+
+    public void evictUser(UUID userId) {
+        generation.incrementAndGet();
+        byToken.forEach((token, entry) -> {
+            if (userId.equals(entry.response.getUserId())) {
+                remove(token, entry);
+            }
+        });
+    }
+
+    private void remove(String token, Entry entry) {
+        if (byToken.remove(token, entry)) {
+            bytes.addAndGet(-entry.bytes);
+        }
+    }
+
+    // Concurrent puts can leave the byte count slightly off; it is reset here
+    private void clear() {
+        byToken.clear();
+        bytes.set(0);
+    }
+
+    // Strings are Latin-1 here (base64 image, token), so about one byte per char
+    private static long sizeOf(String token, TokenValidationResponse response) {
+        return ENTRY_OVERHEAD_BYTES + token.length() + length(response.getUsername())
+                + length(response.getFullName()) + length(response.getUserImage());
+    }
+
+    private static long length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    @Override
+    public void onInvalidation(Collection<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            switch (event.getType()) {
+                case SESSION:
+                    evictToken(event.getKey());
+                    break;
+                case USER:
+                case USER_DELETED:
+                    evictUser(event.getUserId());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void onFullFlush() {
+        generation.incrementAndGet();
+        clear();
+    }
+}
@@ -0,0 +1,593 @@
+package com.myapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// ==================== USER SEARCH INDEX ====================
+// In-memory index over username and full_name so search never touches the
+// database. Tokens live in a sorted map (prefix lookups are a subMap range)
+// and every token is also indexed by its trigrams, which gives the candidate
+// set for typo-tolerant matching of longer tokens. Short tokens can lose every
+// trigram to one typo, so they look up their one-edit neighbours instead.
+@Component
+class UserSearchIndex implements CacheInvalidationListener {
+
+    static final int MAX_RESULTS = 50;
+
+    // Stop collecting once this many users matched every query token
+    private static final int MAX_CANDIDATES = 1000;
+
+    // Upper bound on users examined per query, however common the rarest token is
+    private static final int MAX_SCANNED = 20000;
+
+    // Prefix estimates stop after this many distinct tokens (what was counted so far is a lower bound)
+    private static final int MAX_ESTIMATED_TOKENS = 1000;
+
+    // Query tokens shorter than this only get exact/prefix matching
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    // Query tokens up to this length allow one typo, longer ones two
+    private static final int MAX_ONE_EDIT_LENGTH = 5;
+
+    // Match scores per query token, lower is better
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int FUZZY = 2;
+
+    @Autowired
+    private UserRepository repo;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> indexOf = new HashMap<>();
+    private final List<UUID> userAt = new ArrayList<>();
+    private final List<String> usernameAt = new ArrayList<>();
+    private final List<String> fullNameAt = new ArrayList<>();
+    private final List<String[]> tokensAt = new ArrayList<>();
+    private final NavigableMap<String, IntHashSet> usersByToken = new TreeMap<>();
+    private final Map<String, Set<String>> tokensByGram = new HashMap<>();
+    private volatile boolean loaded;
+
+    // Load lazily so startup does not pay for reading every user
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // From the primary: users missed here would never be added later
+                for (Object[] row : ReadRoutingContext.onPrimary(repo::findSearchFields)) {
+                    put((UUID) row[0], (String) row[1], (String) row[2]);
+                }
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drop the in-memory copy; the next search reloads it from the database
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            indexOf.clear();
+            userAt.clear();
+            usernameAt.clear();
+            fullNameAt.clear();
+            tokensAt.clear();
+            usersByToken.clear();
+            tokensByGram.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called after signup or profile update
+    public void addOrUpdate(User user) {
+        addOrUpdate(user.getUserId(), user.getUsername(), user.getFullName());
+    }
+
+    private void addOrUpdate(UUID userId, String username, String fullName) {
+        lock.writeLock().lock();
+        try {
+            // Not loaded yet: the first search will read the row from the database
+            if (loaded) {
+                put(userId, username, fullName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // User changed on another node: re-read its searchable columns
+    public void refresh(UUID userId) {
+        if (!loaded) {
+            return;
+        }
+        List<Object[]> rows = ReadRoutingContext.onPrimary(() -> repo.findSearchFieldsById(userId));
+        if (rows.isEmpty()) {
+            remove(userId);
+        } else {
+            addOrUpdate(userId, (String) rows.get(0)[1], (String) rows.get(0)[2]);
+        }
+    }
+
+    @Override
+    public void onInvalidation(Collection<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            if (event.getType() == InvalidationEvent.Type.USER) {
+                refresh(event.getUserId());
+            } else if (event.getType() == InvalidationEvent.Type.USER_DELETED) {
+                remove(event.getUserId());
+            }
+        }
+    }
+
+    @Override
+    public void onFullFlush() {
+        invalidate();
+    }
+
+    // Called after a user is deleted
+    public void remove(UUID userId) {
+        lock.writeLock().lock();
+        try {
+            Integer index = indexOf.get(userId);
+            if (index != null) {
+                unindex(index);
+                usernameAt.set(index, null);
+                fullNameAt.set(index, null);
+                tokensAt.set(index, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller must hold the write lock
+    private void put(UUID userId, String username, String fullName) {
+        Integer index = indexOf.get(userId);
+        if (index == null) {
+            index = userAt.size();
+            indexOf.put(userId, index);
+            userAt.add(userId);
+            usernameAt.add(null);
+            fullNameAt.add(null);
+            tokensAt.add(null);
+        } else {
+            unindex(index);
+        }
+        String[] tokens = tokensOf(username, fullName).toArray(new String[0]);
+        usernameAt.set(index, username);
+        fullNameAt.set(index, fullName);
+        tokensAt.set(index, tokens);
+        for (String token : tokens) {
+            IntHashSet users = usersByToken.get(token);
+            if (users == null) {
+                users = new IntHashSet();
+                usersByToken.put(token, users);
+                for (String gram : gramsOf(token)) {
+                    tokensByGram.computeIfAbsent(gram, g -> new HashSet<>()).add(token);
+                }
+            }
+            users.add(index);
+        }
+    }
+
+    // Caller must hold the write lock
+    private void unindex(int index) {
+        String[] tokens = tokensAt.get(index);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            IntHashSet users = usersByToken.get(token);
+            if (users == null) {
+                continue;
+            }
+            users.remove(index);
+            if (users.size() == 0) {
+                usersByToken.remove(token);
+                for (String gram : gramsOf(token)) {
+                    Set<String> withGram = tokensByGram.get(gram);
+                    if (withGram != null && withGram.remove(token) && withGram.isEmpty()) {
+                        tokensByGram.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    public List<UserSearchResult> search(String query, int limit) {
+        List<String> queryTokens = tokenize(query);
+        int k = Math.max(0, Math.min(limit, MAX_RESULTS));
+        if (queryTokens.isEmpty() || k == 0) {
+            return new ArrayList<>();
+        }
+
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            // Every query token has to match some token of the user; scores add up
+            List<TokenMatch> matches = new ArrayList<>(queryTokens.size());
+            for (String queryToken : queryTokens) {
+                TokenMatch match = match(queryToken, k);
+                if (match.estimate == 0) {
+                    return new ArrayList<>();
+                }
+                matches.add(match);
+            }
+            // Walk the rarest token's users and intersect as we go, so the
+            // candidate cap counts users that already match the whole query
+            matches.sort(Comparator.comparingLong(match -> match.estimate));
+            Map<Integer, Integer> scores = collect(matches);
+
+            Comparator<Map.Entry<Integer, Integer>> byRank = (x, y) -> {
+                int byScore = Integer.compare(x.getValue(), y.getValue());
+                if (byScore != 0) {
+                    return byScore;
+                }
+                String usernameX = usernameAt.get(x.getKey());
+                String usernameY = usernameAt.get(y.getKey());
+                int byLength = Integer.compare(usernameX.length(), usernameY.length());
+                return byLength != 0 ? byLength : usernameX.compareTo(usernameY);
+            };
+
+            // Keep the best k in a heap whose head is the worst of them
+            PriorityQueue<Map.Entry<Integer, Integer>> best = new PriorityQueue<>(k + 1, byRank.reversed());
+            for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                best.add(entry);
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(best);
+            ranked.sort(byRank);
+
+            List<UserSearchResult> results = new ArrayList<>(ranked.size());
+            for (Map.Entry<Integer, Integer> entry : ranked) {
+                int index = entry.getKey();
+                results.add(new UserSearchResult(userAt.get(index), usernameAt.get(index), fullNameAt.get(index)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // How one query token can match: exact postings, prefix postings and typo
+    // matches (token -> score), plus a rough count of the users behind them
+    private static class TokenMatch {
+        final String queryToken;
+        IntHashSet exact;
+        NavigableMap<String, IntHashSet> prefixed;
+        final Map<String, Integer> fuzzy = new HashMap<>();
+        long estimate;
+
+        TokenMatch(String queryToken) {
+            this.queryToken = queryToken;
+        }
+    }
+
+    // Caller must hold the read lock
+    private TokenMatch match(String queryToken, int limit) {
+        TokenMatch match = new TokenMatch(queryToken);
+        match.exact = usersByToken.get(queryToken);
+        match.prefixed = usersByToken.subMap(queryToken, false, queryToken + Character.MAX_VALUE, false);
+
+        long estimate = match.exact == null ? 0 : match.exact.size();
+        int walked = 0;
+        for (IntHashSet users : match.prefixed.values()) {
+            // Many usernames can share a prefix with one user each; walking them all
+            // costs more than the ordering gains, and collect() caps the scan anyway
+            if (estimate >= MAX_SCANNED || ++walked > MAX_ESTIMATED_TOKENS) {
+                break;
+            }
+            estimate += users.size();
+        }
+
+        // Only fall back to typo matching when exact/prefix cannot fill the page
+        if (estimate < limit && queryToken.length() >= MIN_FUZZY_LENGTH) {
+            estimate += queryToken.length() <= MAX_ONE_EDIT_LENGTH ? matchOneEdit(match) : matchTwoEdits(match);
+        }
+        match.estimate = estimate;
+        return match;
+    }
+
+    // Tokens sharing enough trigrams with the query token and within two edits of
+    // it, or of its head (their prefix of the same length). Returns the users
+    // added. Caller must hold the read lock.
+    private long matchTwoEdits(TokenMatch match) {
+        long estimate = 0;
+        String queryToken = match.queryToken;
+        int maxEdits = 2;
+        List<String> grams = gramsOf(queryToken);
+        int minShared = Math.max(1, grams.size() - 3 * maxEdits);
+
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> tokens = tokensByGram.get(gram);
+            if (tokens != null) {
+                for (String token : tokens) {
+                    shared.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            String token = entry.getKey();
+            if (entry.getValue() < minShared || token.startsWith(queryToken)) {
+                continue;
+            }
+            // Compare against the whole token and against its prefix of the same length
+            String head = token.length() > queryToken.length() ? token.substring(0, queryToken.length()) : token;
+            int edits = Math.min(editDistance(queryToken, token, maxEdits),
+                    editDistance(queryToken, head, maxEdits));
+            if (edits <= maxEdits) {
+                match.fuzzy.put(token, FUZZY + edits);
+                estimate += usersByToken.get(token).size();
+            }
+        }
+        return estimate;
+    }
+
+    // Every token one edit (insert, delete, substitute, swap neighbours) away from
+    // the query token, plus tokens starting with a same-length neighbour (the
+    // head comparison of matchTwoEdits). "jhon" and "john" share no trigram, so this
+    // looks the neighbours up directly; inserted and substituted characters are
+    // only those that follow the preceding prefix in some indexed token.
+    // Returns the users added. Caller must hold the read lock.
+    private long matchOneEdit(TokenMatch match) {
+        String queryToken = match.queryToken;
+        Set<String> wholeTokens = new HashSet<>();
+        Set<String> tokenHeads = new HashSet<>();
+        for (int i = 0; i <= queryToken.length(); i++) {
+            String head = queryToken.substring(0, i);
+            for (char c : nextChars(head)) {
+                wholeTokens.add(head + c + queryToken.substring(i));
+                if (i < queryToken.length()) {
+                    tokenHeads.add(head + c + queryToken.substring(i + 1));
+                }
+            }
+            if (i < queryToken.length()) {
+                wholeTokens.add(head + queryToken.substring(i + 1));
+            }
+            if (i + 1 < queryToken.length()) {
+                tokenHeads.add(head + queryToken.charAt(i + 1) + queryToken.charAt(i) + queryToken.substring(i + 2));
+            }
+        }
+        tokenHeads.remove(queryToken);
+
+        long estimate = 0;
+        wholeTokens.addAll(tokenHeads);
+        for (String token : wholeTokens) {
+            estimate += addOneEdit(match, token, usersByToken.get(token));
+        }
+        // Longer tokens behind a neighbour are bounded like the prefix estimate
+        int walked = 0;
+        for (String tokenHead : tokenHeads) {
+            for (Map.Entry<String, IntHashSet> entry
+                    : usersByToken.subMap(tokenHead, false, tokenHead + Character.MAX_VALUE, false).entrySet()) {
+                if (estimate >= MAX_SCANNED || ++walked > MAX_ESTIMATED_TOKENS) {
+                    return estimate;
+                }
+                estimate += addOneEdit(match, entry.getKey(), entry.getValue());
+            }
+        }
+        return estimate;
+    }
+
+    private int addOneEdit(TokenMatch match, String token, IntHashSet users) {
+        if (users == null || token.startsWith(match.queryToken)
+                || match.fuzzy.putIfAbsent(token, FUZZY + 1) != null) {
+            return 0;
+        }
+        return users.size();
+    }
+
+    // Distinct characters that follow prefix in indexed tokens, found by
+    // skipping from one to the next in the sorted map. Caller must hold the read lock.
+    private List<Character> nextChars(String prefix) {
+        List<Character> chars = new ArrayList<>();
+        String token = usersByToken.higherKey(prefix);
+        while (token != null && token.startsWith(prefix)) {
+            char c = token.charAt(prefix.length());
+            chars.add(c);
+            if (c == Character.MAX_VALUE) {
+                break;
+            }
+            token = usersByToken.ceilingKey(prefix + (char) (c + 1));
+        }
+        return chars;
+    }
+
+    // Scores users of the first (rarest) token against the rest, best postings
+    // first. Caller must hold the read lock.
+    private Map<Integer, Integer> collect(List<TokenMatch> matches) {
+        TokenMatch driver = matches.get(0);
+        Map<Integer, Integer> scores = new HashMap<>();
+        IntHashSet seen = new IntHashSet();
+
+        if (driver.exact != null
+                && !driver.exact.forEachWhile(index -> visit(index, EXACT, matches, scores, seen))) {
+            return scores;
+        }
+        for (IntHashSet users : driver.prefixed.values()) {
+            if (!users.forEachWhile(index -> visit(index, PREFIX, matches, scores, seen))) {
+                return scores;
+            }
+        }
+        List<Map.Entry<String, Integer>> fuzzy = new ArrayList<>(driver.fuzzy.entrySet());
+        fuzzy.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Integer> entry : fuzzy) {
+            int score = entry.getValue();
+            if (!usersByToken.get(entry.getKey()).forEachWhile(index -> visit(index, score, matches, scores, seen))) {
+                return scores;
+            }
+        }
+        return scores;
+    }
+
+    // Adds the user if every other query token matches it; false once a cap is hit
+    private boolean visit(int index, int driverScore, List<TokenMatch> matches, Map<Integer, Integer> scores,
+            IntHashSet seen) {
+        if (!seen.add(index)) {
+            return true;
+        }
+        int total = driverScore;
+        for (int i = 1; i < matches.size() && total >= 0; i++) {
+            int score = score(matches.get(i), index);
+            total = score < 0 ? -1 : total + score;
+        }
+        if (total >= 0) {
+            scores.put(index, total);
+        }
+        return scores.size() < MAX_CANDIDATES && seen.size() < MAX_SCANNED;
+    }
+
+    // Best score of one query token against one user's tokens, -1 if none match
+    private int score(TokenMatch match, int index) {
+        int best = -1;
+        for (String token : tokensAt.get(index)) {
+            int score;
+            if (token.equals(match.queryToken)) {
+                return EXACT;
+            } else if (token.startsWith(match.queryToken)) {
+                score = PREFIX;
+            } else {
+                score = match.fuzzy.getOrDefault(token, -1);
+            }
+            if (score >= 0 && (best < 0 || score < best)) {
+                best = score;
+            }
+        }
+        return best;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String part : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!part.isEmpty()) {
+                tokens.add(part);
+            }
+        }
+        return tokens;
+    }
+
+    // Whole lower-cased username plus the words of both fields
+    private static Set<String> tokensOf(String username, String fullName) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (username != null && !username.isEmpty()) {
+            tokens.add(username.toLowerCase(Locale.ROOT));
+        }
+        tokens.addAll(tokenize(username));
+        tokens.addAll(tokenize(fullName));
+        return tokens;
+    }
+
+    // Trigrams with a start marker, so the first letters weigh in
+    private static List<String> gramsOf(String token) {
+        String padded = "^" + token;
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        if (grams.isEmpty()) {
+            grams.add(padded);
+        }
+        return grams;
+    }
+
+    // Edit distance counting an adjacent swap as one edit (optimal string
+    // alignment), giving up (returns max + 1) once it exceeds max
+    private static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
+
+// User Search Result (no password or image, served straight from the index)
+class UserSearchResult {
+    private UUID userId;
+    private String username;
+    private String fullName;
+
+    public UserSearchResult() {
+    }
+
+    public UserSearchResult(UUID userId, String username, String fullName) {
+        this.userId = userId;
+        this.username = username;
+        this.fullName = fullName;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+}
@@ -0,0 +1,91 @@
+#!/usr/bin/env bash
+# Startup benchmark: time from JVM launch to the first successful HTTP request.
+#
+#   mvn -Pcds package            # builds target/*.jar and target/cds/
+#   ./startup-benchmark.sh [runs]
+#
+# Every variant that has been built is started RUNS times (default 5). Output is
+# one JSON object per run followed by one summary object per variant, e.g.
+#   {"variant":"cds-aot","run":1,"timeToFirstRequestMs":812}
+#   {"variant":"cds-aot","runs":5,"minMs":790,"medianMs":812,"maxMs":845}
+#
+# BENCH_PORT (default 18080) and BENCH_PATH pick the request that counts as "first
+# successful". The default is a session lookup that needs no data (it answers []),
+# but goes through the pool and Hibernate, so variants that defer that work pay
+# for it here. BENCH_PATH=/api/users/health measures the web server alone.
+# BENCH_APP_ARGS is appended to every start, e.g. to point at a local database:
+#   BENCH_APP_ARGS="--spring.datasource.url=jdbc:postgresql://localhost:5432/postgres"
+
+set -u
+
+RUNS="${1:-5}"
+PORT="${BENCH_PORT:-18080}"
+URL="http://localhost:${PORT}${BENCH_PATH:-/api/users/sessions/00000000-0000-0000-0000-000000000000}"
+TIMEOUT_SECONDS=120
+
+cd "$(dirname "$0")/target" || { echo "target/ not found, run mvn package first" >&2; exit 1; }
+
+FAT_JAR="$(ls backend-*.jar 2>/dev/null | grep -v -- '-cds.jar' | head -n 1)"
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# Prints elapsed milliseconds until URL answers 2xx, or "-1" on timeout
+time_first_request() {
+    local dir="$1"
+    shift
+    local start
+    start="$(now_ms)"
+    (cd "$dir" && exec java "$@" --server.port="$PORT" ${BENCH_APP_ARGS:-} >/dev/null 2>&1) &
+    local pid=$!
+    local elapsed=-1
+    while (( $(now_ms) - start < TIMEOUT_SECONDS * 1000 )); do
+        if curl -sf -o /dev/null "$URL"; then
+            elapsed=$(( $(now_ms) - start ))
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.02
+    done
+    kill "$pid" 2>/dev/null
+    wait "$pid" 2>/dev/null
+    echo "$elapsed"
+}
+
+run_variant() {
+    local variant="$1"
+    shift
+    local times=()
+    for run in $(seq 1 "$RUNS"); do
+        local ms
+        ms="$(time_first_request "$@")"
+        echo "{\"variant\":\"${variant}\",\"run\":${run},\"timeToFirstRequestMs\":${ms}}"
+        if [ "$ms" -ge 0 ]; then
+            times+=("$ms")
+        fi
+    done
+    if [ "${#times[@]}" -eq 0 ]; then
+        echo "{\"variant\":\"${variant}\",\"runs\":0,\"error\":\"no successful start\"}"
+        return
+    fi
+    local sorted
+    sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+    local n=${#sorted[@]}
+    echo "{\"variant\":\"${variant}\",\"runs\":${n},\"minMs\":${sorted[0]},\"medianMs\":${sorted[$(( n / 2 ))]},\"maxMs\":${sorted[$(( n - 1 ))]}}"
+}
+
+if [ -n "$FAT_JAR" ]; then
+    run_variant "jar" . -jar "$FAT_JAR"
+    run_variant "jar-lazy" . -jar "$FAT_JAR" --spring.profiles.active=lazy
+fi
+
+if [ -f cds/app.jsa ]; then
+    CDS_JAR="$(cd cds && ls backend-*-cds.jar | head -n 1)"
+    run_variant "cds-aot" cds -XX:SharedArchiveFile=app.jsa -Xlog:cds=off -Dspring.aot.enabled=true -jar "$CDS_JAR"
+    # Lazy beans and minimum-idle only: AOT fixed the JPA bootstrap mode when it was built
+    run_variant "cds-aot-lazy" cds -XX:SharedArchiveFile=app.jsa -Xlog:cds=off -Dspring.aot.enabled=true \
+        -jar "$CDS_JAR" --spring.profiles.active=lazy
+fi